@@ -1,22 +1,35 @@
 package it.units.crossway.client;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import feign.FeignException;
+import feign.Response;
+import feign.RetryableException;
 import it.units.crossway.client.exception.InvalidUserInputException;
 import it.units.crossway.client.exception.PlacementViolationException;
 import it.units.crossway.client.model.*;
 import it.units.crossway.client.model.dto.GameCreationIntent;
+import it.units.crossway.client.model.dto.EventAckDto;
+import it.units.crossway.client.model.dto.EventErrorDto;
 import it.units.crossway.client.model.dto.GameDto;
 import it.units.crossway.client.model.dto.PlayerDto;
 import it.units.crossway.client.model.dto.StonePlacementIntentDto;
 import it.units.crossway.client.model.event.OnJoinEventListener;
 import it.units.crossway.client.model.event.OnPieRuleEventListener;
 import it.units.crossway.client.model.event.OnPlacementEventListener;
+import it.units.crossway.client.model.event.OnSequenceGapListener;
+import it.units.crossway.client.model.event.OnWinEventListener;
 import it.units.crossway.client.remote.Api;
+import it.units.crossway.client.remote.GameEventMessageConverter;
 import it.units.crossway.client.remote.StompMessageHandler;
+import it.units.crossway.core.GameEvent;
 import lombok.Data;
 import lombok.NonNull;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.converter.CompositeMessageConverter;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.simp.stomp.StompFrameHandler;
 import org.springframework.messaging.simp.stomp.StompHeaders;
 import org.springframework.messaging.simp.stomp.StompSession;
 import org.springframework.messaging.simp.stomp.StompSessionHandlerAdapter;
@@ -26,8 +39,15 @@ import org.springframework.web.socket.messaging.WebSocketStompClient;
 import org.springframework.web.socket.sockjs.client.SockJsClient;
 import org.springframework.web.socket.sockjs.client.WebSocketTransport;
 
-import java.util.List;
-import java.util.StringJoiner;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.IntStream;
 
 import static it.units.crossway.client.IOUtils.*;
@@ -35,7 +55,20 @@ import static it.units.crossway.client.model.Frame.*;
 
 @Component
 @Data
-public class GameHandler implements OnJoinEventListener, OnPlacementEventListener, OnPieRuleEventListener {
+public class GameHandler implements OnJoinEventListener, OnPlacementEventListener, OnPieRuleEventListener,
+        OnWinEventListener, OnSequenceGapListener {
+
+    private static final String APP_DESTINATION_PREFIX = "/app";
+    private static final String ERRORS_DESTINATION = "/user/queue/errors";
+    private static final String ACKS_DESTINATION = "/user/queue/acks";
+    private static final String EVENTS_TOPIC_SUFFIX = "/events";
+    private static final String BINARY_TOPIC_SUFFIX = "/binary";
+    private static final String IDEMPOTENCY_KEY_HEADER = "idempotency-key";
+    private static final int MAX_SUBMISSION_ATTEMPTS = 3;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+    private static final int AVAILABLE_GAMES_PAGE_SIZE = 100;
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
 
     private Player player;
     private Board board;
@@ -43,8 +76,18 @@ public class GameHandler implements OnJoinEventListener, OnPlacementEventListene
     private Frame frame;
     private Api api;
     private String uuid;
+    private StompSession stompSession;
+    private WebSocketStompClient stompClient;
+    private StompMessageHandler stompMessageHandler;
+    private final ScheduledExecutorService reconnectScheduler = Executors.newSingleThreadScheduledExecutor();
+    private long idempotencyKey;
+    private final AtomicReference<PendingSubmission> pendingSubmission = new AtomicReference<>();
     @Value("${ws-endpoint}")
     private String WS_ENDPOINT;
+    @Value("${binary-events:true}")
+    private boolean binaryEvents = true;
+    @Value("${board-size:19}")
+    private int boardSize = Board.DEFAULT_SIZE;
 
     public GameHandler(Player player, Board board, Turn turn, Api api, Frame frame) {
         this.player = player;
@@ -101,6 +144,7 @@ public class GameHandler implements OnJoinEventListener, OnPlacementEventListene
 
     public void startAndPlayTurnIfSupposed() {
         turn.nextTurn();
+        board.setSideToMove(turn.getTurnColor());
         frame.setBody(turn.getTurnInfoAsString());
         frame.appendBody(board.getAsString(player));
         playTurnIfSupposedTo();
@@ -116,8 +160,15 @@ public class GameHandler implements OnJoinEventListener, OnPlacementEventListene
 
     void playTurn() {
         if (Rules.isPieRuleTurn(turn) && Rules.isPieRuleNotAlreadyAccepted() && isPieRuleRequested()) {
-            Rules.applyPieRule(player, turn);
-            api.acceptPieRule(uuid, new PlayerDto(player.getNickname()));
+            Rules.applyPieRule(player, turn, board);
+            PlayerDto playerDto = new PlayerDto(player.getNickname());
+            long key = ++idempotencyKey;
+            if (isStompSessionConnected()) {
+                sendOverStomp("pie-rule", playerDto,
+                        GameEvent.of(GameEvent.Kind.PIE_RULE, 0, player.getNickname()), key);
+            } else {
+                sendWithRetries(() -> api.acceptPieRule(uuid, key, playerDto));
+            }
             frame.appendFooterAndRefresh(IO_WAITING_FOR_OPPONENT_MOVE);
             return;
         }
@@ -130,19 +181,19 @@ public class GameHandler implements OnJoinEventListener, OnPlacementEventListene
     }
 
     public void endTurn() {
-        checkWinnerIfCouldExist();
         frame.reset();
     }
 
     private void createNewGame() {
-        GameDto gameDto = api.createGame(new GameCreationIntent(player.getNickname()));
-        this.uuid = gameDto.getUuid();
+        GameDto gameDto = api.createGame(new GameCreationIntent(player.getNickname(), boardSize));
+        this.uuid = gameDto.getRoutingKey();
+        this.board = new Board(gameDto.getBoardSize(), gameDto.getBoardSize());
         player.setColor(PlayerColor.BLACK);
     }
 
     private void joinExistingGame() {
         String choice;
-        List<GameDto> allAvailableGames = api.getAllAvailableGames();
+        List<GameDto> allAvailableGames = getAllAvailableGames();
         frame.refreshHeader(constructAvailableGamesMenu(allAvailableGames));
         do {
             choice = IOUtils.getInputLine();
@@ -151,13 +202,42 @@ public class GameHandler implements OnJoinEventListener, OnPlacementEventListene
                 System.exit(0);
             }
         } while (!IOUtils.isChoiceAValidInteger(choice) && (Integer.parseInt(choice) > allAvailableGames.size()));
-        String uuid = allAvailableGames.get(Integer.parseInt(choice) - 1).getUuid();
-        GameDto gameDto = api.joinGame(uuid, new PlayerDto(player.getNickname()));
-        this.uuid = gameDto.getUuid();
+        String routingKey = allAvailableGames.get(Integer.parseInt(choice) - 1).getRoutingKey();
+        GameDto gameDto = api.joinGame(routingKey, new PlayerDto(player.getNickname()));
+        this.uuid = gameDto.getRoutingKey();
+        this.board = new Board(gameDto.getBoardSize(), gameDto.getBoardSize());
         player.setColor(PlayerColor.WHITE);
         frame.resetHeader();
     }
 
+    // follows the cursors to the last page; the cursor is a game id and only moves forward
+    private List<GameDto> getAllAvailableGames() {
+        Map<String, GameDto> availableGames = new LinkedHashMap<>();
+        long cursor = 0;
+        while (true) {
+            try (Response response = api.getAvailableGames(cursor, AVAILABLE_GAMES_PAGE_SIZE)) {
+                if (response.status() != 200) {
+                    throw FeignException.errorStatus("getAvailableGames", response);
+                }
+                List<GameDto> page = List.of();
+                if (response.body() != null) {
+                    try (InputStream body = response.body().asInputStream()) {
+                        page = OBJECT_MAPPER.readValue(body, new TypeReference<List<GameDto>>() {
+                        });
+                    }
+                }
+                page.forEach(gameDto -> availableGames.putIfAbsent(gameDto.getUuid(), gameDto));
+                Collection<String> nextCursor = response.headers().get(Api.NEXT_CURSOR_HEADER);
+                if (nextCursor == null || nextCursor.isEmpty()) {
+                    return new ArrayList<>(availableGames.values());
+                }
+                cursor = Long.parseLong(nextCursor.iterator().next());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
     private String constructAvailableGamesMenu(List<GameDto> availableGames) {
         StringJoiner stringJoiner = new StringJoiner("");
         IntStream.range(0, availableGames.size())
@@ -169,24 +249,138 @@ public class GameHandler implements OnJoinEventListener, OnPlacementEventListene
     }
 
     private void subscribeToTopic() {
-        WebSocketStompClient stompClient = new WebSocketStompClient(new SockJsClient(
+        stompClient = new WebSocketStompClient(new SockJsClient(
                 List.of(new WebSocketTransport(new StandardWebSocketClient()))));
-        stompClient.setMessageConverter(new MappingJackson2MessageConverter());
-        StompMessageHandler stompMessageHandler = new StompMessageHandler();
+        stompClient.setMessageConverter(new CompositeMessageConverter(
+                List.of(new GameEventMessageConverter(), new MappingJackson2MessageConverter())));
+        stompMessageHandler = new StompMessageHandler();
         stompMessageHandler.setJoinEventListener(this);
         stompMessageHandler.setPlacementEventListener(this);
         stompMessageHandler.setPieRuleEventListener(this);
+        stompMessageHandler.setWinEventListener(this);
+        stompMessageHandler.setSequenceGapListener(this);
+        connect();
+    }
+
+    // the message handler outlives the sessions, so a reopened session resumes from the last handled sequence
+    // and first catches up with the events published while the previous one was down
+    private void connect() {
         stompClient.connect(WS_ENDPOINT, new StompSessionHandlerAdapter() {
             @Override
             public void afterConnected(@NonNull StompSession session, @NonNull StompHeaders connectedHeaders) {
-                session.subscribe("/topic/" + uuid, stompMessageHandler);
+                stompSession = session;
+                session.subscribe("/topic/" + uuid + (binaryEvents ? BINARY_TOPIC_SUFFIX : EVENTS_TOPIC_SUFFIX),
+                        stompMessageHandler);
+                session.subscribe(ERRORS_DESTINATION, new StompFrameHandler() {
+                    @Override
+                    @NonNull
+                    public Type getPayloadType(@NonNull StompHeaders headers) {
+                        return EventErrorDto.class;
+                    }
+
+                    @Override
+                    public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+                        // the server rejected the submission, sending it again would not change that
+                        pendingSubmission.set(null);
+                        frame.appendFooterAndRefresh(((EventErrorDto) payload).getMessage());
+                    }
+                });
+                session.subscribe(ACKS_DESTINATION, new StompFrameHandler() {
+                    @Override
+                    @NonNull
+                    public Type getPayloadType(@NonNull StompHeaders headers) {
+                        return EventAckDto.class;
+                    }
+
+                    @Override
+                    public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+                        Long ackedKey = ((EventAckDto) payload).getIdempotencyKey();
+                        PendingSubmission submission = pendingSubmission.get();
+                        if (ackedKey != null && submission != null && submission.getKey() == ackedKey) {
+                            pendingSubmission.compareAndSet(submission, null);
+                        }
+                    }
+                });
+                stompMessageHandler.catchUp();
+                resendPendingSubmission();
+            }
+
+            @Override
+            public void handleTransportError(@NonNull StompSession session, @NonNull Throwable exception) {
+                if (!session.isConnected()) {
+                    reconnectScheduler.schedule(GameHandler.this::connect, RECONNECT_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+                }
             }
         });
     }
 
     private void createAndSendStonePlacementIntent() {
-        StonePlacementIntent stonePlacementIntent = getValidStonePlacementIntent();
-        api.placeStone(uuid, new StonePlacementIntentDto(stonePlacementIntent));
+        StonePlacementIntentDto stonePlacementIntentDto = new StonePlacementIntentDto(getValidStonePlacementIntent());
+        long key = ++idempotencyKey;
+        if (isStompSessionConnected()) {
+            sendOverStomp("placement", stonePlacementIntentDto, GameEvent.placement(0,
+                    stonePlacementIntentDto.getNickname(), stonePlacementIntentDto.getRow(), stonePlacementIntentDto.getColumn()),
+                    key);
+        } else {
+            sendWithRetries(() -> api.placeStone(uuid, key, stonePlacementIntentDto));
+        }
+    }
+
+    // a retry reuses the idempotency key of its submission, so the server applies the submission at most once
+    private void sendWithRetries(Runnable submission) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                submission.run();
+                return;
+            } catch (RetryableException e) {
+                if (attempt == MAX_SUBMISSION_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    // a submission stays pending until it is acknowledged or its event comes back, so a session lost before
+    // either happens can resend it under the same key once it is reopened
+    private void sendOverStomp(String event, Object payload, GameEvent gameEvent, long key) {
+        PendingSubmission submission = new PendingSubmission(event, payload, gameEvent, key);
+        pendingSubmission.set(submission);
+        send(submission);
+    }
+
+    // called once the reopened session has caught up, which settles the submissions the server did apply
+    private void resendPendingSubmission() {
+        PendingSubmission submission = pendingSubmission.get();
+        if (submission != null) {
+            send(submission);
+        }
+    }
+
+    // binary sessions send every event to the single events destination, JSON ones use one destination per event
+    private void send(PendingSubmission submission) {
+        StompHeaders headers = new StompHeaders();
+        headers.set(IDEMPOTENCY_KEY_HEADER, String.valueOf(submission.getKey()));
+        if (binaryEvents) {
+            headers.setDestination(APP_DESTINATION_PREFIX + "/games/" + uuid + "/events");
+            headers.setContentType(GameEventMessageConverter.MIME_TYPE);
+            stompSession.send(headers, submission.getGameEvent());
+        } else {
+            headers.setDestination(APP_DESTINATION_PREFIX + "/games/" + uuid + "/events/" + submission.getEvent());
+            stompSession.send(headers, submission.getPayload());
+        }
+    }
+
+    private void settlePendingSubmission(GameEvent.Kind kind, int row, int column) {
+        PendingSubmission submission = pendingSubmission.get();
+        if (submission != null && submission.getGameEvent().getKind() == kind
+                && submission.getGameEvent().getRow() == row && submission.getGameEvent().getColumn() == column) {
+            pendingSubmission.compareAndSet(submission, null);
+        }
+    }
+
+    // once the session is up, events travel over it and only fall back to REST while it is down
+    private boolean isStompSessionConnected() {
+        return stompSession != null && stompSession.isConnected();
     }
 
     private StonePlacementIntent getValidStonePlacementIntent() {
@@ -202,16 +396,10 @@ public class GameHandler implements OnJoinEventListener, OnPlacementEventListene
         }
     }
 
-    private void checkWinnerIfCouldExist() {
-        if (Rules.couldExistsWinner(turn) && Rules.checkWin(board, turn.getTurnColor())) {
-            endGame();
-        }
-    }
-
-    private void endGame() {
+    private void endGame(boolean isWinner) {
         frame.setBody(turn.getTurnInfoAsString());
         frame.appendBody(board.getAsString(player));
-        if (turn.isPlayerTurn(player)) {
+        if (isWinner) {
             handleWin();
         } else {
             handleLose();
@@ -226,7 +414,6 @@ public class GameHandler implements OnJoinEventListener, OnPlacementEventListene
 
     private void handleWin() {
         frame.appendFooterAndRefresh(WIN_MESSAGE);
-        api.deleteGameByUuid(uuid);
     }
 
     public boolean isPieRuleRequested() {
@@ -243,22 +430,44 @@ public class GameHandler implements OnJoinEventListener, OnPlacementEventListene
 
     @Override
     public void onJoinEvent(String nickname) {
+        // the joiner only learns about its own join when catching up, and it has already started the game
+        if (nickname.equals(player.getNickname())) {
+            return;
+        }
         frame.setHeader(nickname + " joined the game\n");
         startGame();
     }
 
     @Override
     public void onPieRuleEvent(String claimer) {
-        if (!claimer.equals(player.getNickname())) {
-            Rules.applyPieRule(player, turn);
+        if (claimer.equals(player.getNickname())) {
+            settlePendingSubmission(GameEvent.Kind.PIE_RULE, 0, 0);
+        } else {
+            Rules.applyPieRule(player, turn, board);
             frame.appendFooterAndRefresh("The opponent has claimed the pie rule: " +
                     "now " + claimer + " is the BLACK player and you are the WHITE player.");
             playTurnIfSupposedTo();
         }
     }
 
+    @Override
+    public void onWinEvent(String winner) {
+        endGame(winner.equals(player.getNickname()));
+    }
+
+    @Override
+    public List<GameEvent> onSequenceGap(long lastSequence) {
+        try {
+            return api.getGameState(uuid, lastSequence).getEvents();
+        } catch (FeignException e) {
+            frame.appendFooterAndRefresh("Could not fetch the missed events of the game");
+            return List.of();
+        }
+    }
+
     @Override
     public void onPlacementEvent(StonePlacementIntent stonePlacementIntent) {
+        settlePendingSubmission(GameEvent.Kind.PLACEMENT, stonePlacementIntent.getRow(), stonePlacementIntent.getColumn());
         board.placeStone(
                 stonePlacementIntent.getRow(),
                 stonePlacementIntent.getColumn(),
@@ -267,5 +476,24 @@ public class GameHandler implements OnJoinEventListener, OnPlacementEventListene
         endTurn();
         startAndPlayTurnIfSupposed();
     }
-}
 
+    // only the server decides the winner, the stone is just shown until its win event ends the game
+    @Override
+    public void onWinningPlacementEvent(StonePlacementIntent stonePlacementIntent) {
+        settlePendingSubmission(GameEvent.Kind.PLACEMENT, stonePlacementIntent.getRow(), stonePlacementIntent.getColumn());
+        board.placeStone(
+                stonePlacementIntent.getRow(),
+                stonePlacementIntent.getColumn(),
+                turn.getTurnColor()
+        );
+        endTurn();
+    }
+
+    @lombok.Value
+    private static class PendingSubmission {
+        String event;
+        Object payload;
+        GameEvent gameEvent;
+        long key;
+    }
+}
@@ -1,5 +1,9 @@
 package it.units.crossway.client.model;
 
+import it.units.crossway.core.BoardEngine;
+import it.units.crossway.core.NeighbourTable;
+import it.units.crossway.core.PlacementViolation;
+import it.units.crossway.core.Stone;
 import org.javatuples.Pair;
 import org.springframework.stereotype.Component;
 
@@ -10,124 +14,178 @@ import java.util.stream.IntStream;
 @Component
 public class Board {
 
-    public static int FIRST_ROW = 1;
-    public static int FIRST_COLUMN = 1;
-    public static int LAST_ROW = 19;
-    public static int LAST_COLUMN = 19;
-    private Map<Pair<Integer, Integer>, PlayerColor> boardState;
+    public static final int FIRST_ROW = BoardEngine.FIRST_ROW;
+    public static final int FIRST_COLUMN = BoardEngine.FIRST_COLUMN;
+    public static final int DEFAULT_SIZE = BoardEngine.DEFAULT_SIZE;
+    private final BoardEngine engine;
 
     public Board() {
-        initIntersections();
+        this(DEFAULT_SIZE, DEFAULT_SIZE);
     }
 
-    private void initIntersections() {
-        this.boardState = new HashMap<>();
+    public Board(int lastRow, int lastColumn) {
+        this.engine = new BoardEngine(lastRow, lastColumn);
+    }
+
+    public BoardEngine getEngine() {
+        return engine;
+    }
+
+    public int getLastRow() {
+        return engine.getLastRow();
+    }
+
+    public int getLastColumn() {
+        return engine.getLastColumn();
     }
 
     public PlayerColor getStoneColorAt(int row, int column) {
-        Pair<Integer, Integer> intersection = new Pair<>(row, column);
-        if (boardState.containsKey(intersection)) {
-            return boardState.get(intersection);
-        }
-        return PlayerColor.NONE;
+        return toPlayerColor(engine.getStoneAt(row, column));
     }
 
     public PlayerColor getStoneColorAtIntersection(Pair<Integer, Integer> intersection) {
-        if (boardState.containsKey(intersection)) {
-            return boardState.get(intersection);
-        }
-        return PlayerColor.NONE;
+        return getStoneColorAt(intersection.getValue0(), intersection.getValue1());
     }
 
     public void placeStone(int row, int column, PlayerColor playerColor) {
-        if (playerColor != PlayerColor.NONE) {
-            boardState.put(new Pair<>(row, column), playerColor);
-        }
+        engine.placeStone(row, column, toStone(playerColor));
+    }
+
+    public boolean undoPlacement() {
+        return engine.undoPlacement();
+    }
+
+    public int getPlacementCount() {
+        return engine.getPlacementCount();
+    }
+
+    public long getPositionKey() {
+        return engine.getPositionKey();
+    }
+
+    public PlayerColor getSideToMove() {
+        return toPlayerColor(engine.getSideToMove());
+    }
+
+    public void setSideToMove(PlayerColor playerColor) {
+        engine.setSideToMove(toStone(playerColor));
+    }
+
+    public boolean isPieRuleApplied() {
+        return engine.isPieRuleApplied();
+    }
+
+    public void applyPieRule() {
+        engine.applyPieRule();
+    }
+
+    public PlacementViolation validatePlacement(int row, int column, PlayerColor playerColor) {
+        return engine.validatePlacement(row, column, toStone(playerColor));
+    }
+
+    public boolean isDiagonalViolation(int row, int column, PlayerColor playerColor) {
+        return engine.isDiagonalViolation(row, column, toStone(playerColor));
+    }
+
+    public boolean hasLegalPlacement(PlayerColor playerColor) {
+        return engine.hasLegalPlacement(toStone(playerColor));
+    }
+
+    public int getLegalPlacementCount(PlayerColor playerColor) {
+        return engine.getLegalPlacementCount(toStone(playerColor));
+    }
+
+    public boolean isLegalPlacement(int row, int column, PlayerColor playerColor) {
+        return engine.isLegalPlacement(row, column, toStone(playerColor));
+    }
+
+    // iterates legal placements as intersection indexes: for (i = next(c, 0); i >= 0; i = next(c, i + 1))
+    public int nextLegalPlacement(PlayerColor playerColor, int fromIndex) {
+        return engine.nextLegalPlacement(toStone(playerColor), fromIndex);
+    }
+
+    public int getRowOfIndex(int index) {
+        return engine.getRowOfIndex(index);
+    }
+
+    public int getColumnOfIndex(int index) {
+        return engine.getColumnOfIndex(index);
+    }
+
+    public boolean hasWon(PlayerColor playerColor) {
+        return engine.hasWon(toStone(playerColor));
+    }
+
+    public boolean hasConnectingPath(PlayerColor playerColor) {
+        return engine.hasConnectingPath(toStone(playerColor));
     }
 
     public boolean isPlacementOutOfBoardBoundaries(int row, int column) {
-        return row > LAST_ROW || column > LAST_COLUMN || row < FIRST_ROW || column < FIRST_COLUMN;
+        return engine.isPlacementOutOfBoardBoundaries(row, column);
     }
 
     public int getNumberOfStonesInColumnByPlayerColor(int column, PlayerColor playerColor) {
-        return (int) boardState.entrySet().stream()
-                .filter(entry -> entry.getKey().getValue1() == column &&
-                        entry.getValue() == playerColor)
-                .count();
+        return engine.getNumberOfStonesInColumn(column, toStone(playerColor));
     }
 
     public int getNumberOfStonesInRowByPlayerColor(int row, PlayerColor playerColor) {
-        return (int) boardState.entrySet().stream()
-                .filter(entry -> entry.getKey().getValue0() == row &&
-                        entry.getValue() == playerColor)
-                .count();
+        return engine.getNumberOfStonesInRow(row, toStone(playerColor));
     }
 
     public Set<Pair<Integer, Integer>> getIntersectionsOccupiedByPlayerInColumn(PlayerColor playerColor, int column) {
-        return boardState.entrySet().stream()
-                .filter(entry -> entry.getKey().getValue1() == column &&
-                        entry.getValue() == playerColor)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toSet());
+        Set<Pair<Integer, Integer>> intersections = new HashSet<>();
+        if (column < 0 || column >= engine.getWidth()) {
+            return intersections;
+        }
+        for (int row = 0; row < engine.getHeight(); row++) {
+            if (playerColor != PlayerColor.NONE && getStoneColorAt(row, column) == playerColor) {
+                intersections.add(new Pair<>(row, column));
+            }
+        }
+        return intersections;
     }
 
     public Set<Pair<Integer, Integer>> getIntersectionsOccupiedByPlayerInRow(PlayerColor playerColor, int row) {
-        return boardState.entrySet().stream()
-                .filter(entry -> entry.getKey().getValue0() == row &&
-                        entry.getValue() == playerColor)
-                .map(Map.Entry::getKey)
-                .collect(Collectors.toSet());
+        Set<Pair<Integer, Integer>> intersections = new HashSet<>();
+        if (row < 0 || row >= engine.getHeight()) {
+            return intersections;
+        }
+        int stone = toStone(playerColor);
+        int rowStart = engine.getIntersectionIndex(row, 0);
+        int rowEnd = engine.getIntersectionIndex(row + 1, 0);
+        for (int index = engine.nextStone(stone, rowStart); index >= 0 && index < rowEnd;
+             index = engine.nextStone(stone, index + 1)) {
+            intersections.add(new Pair<>(row, index - rowStart));
+        }
+        return intersections;
     }
 
     public Set<Pair<Integer, Integer>> getAdjIntersections(Pair<Integer, Integer> intersection) {
         Set<Pair<Integer, Integer>> adjIntersections = new HashSet<>();
         int row = intersection.getValue0();
         int column = intersection.getValue1();
-        if (column == LAST_COLUMN && row > FIRST_ROW && row < LAST_ROW) {
-            adjIntersections.add(new Pair<>(row - 1, column));
-            adjIntersections.add(new Pair<>(row + 1, column));
-            adjIntersections.add(new Pair<>(row - 1, column - 1));
-            adjIntersections.add(new Pair<>(row, column - 1));
-            adjIntersections.add(new Pair<>(row + 1, column - 1));
+        if (!engine.isIntersectionStored(row, column)) {
             return adjIntersections;
         }
-        if (row == LAST_ROW && column > FIRST_COLUMN && column < LAST_COLUMN) {
-            adjIntersections.add(new Pair<>(row - 1, column - 1));
-            adjIntersections.add(new Pair<>(row - 1, column));
-            adjIntersections.add(new Pair<>(row - 1, column + 1));
-            adjIntersections.add(new Pair<>(row, column + 1));
-            adjIntersections.add(new Pair<>(row, column - 1));
-            return adjIntersections;
-        }
-        if (column == FIRST_COLUMN && row > FIRST_ROW && row < LAST_ROW) {
-            adjIntersections.add(new Pair<>(row - 1, column));
-            adjIntersections.add(new Pair<>(row + 1, column));
-            adjIntersections.add(new Pair<>(row, column + 1));
-            adjIntersections.add(new Pair<>(row - 1, column + 1));
-            adjIntersections.add(new Pair<>(row + 1, column + 1));
-            return adjIntersections;
-        }
-        if (row == FIRST_ROW && column > FIRST_COLUMN && column < LAST_COLUMN) {
-            adjIntersections.add(new Pair<>(row, column + 1));
-            adjIntersections.add(new Pair<>(row, column - 1));
-            adjIntersections.add(new Pair<>(row + 1, column));
-            adjIntersections.add(new Pair<>(row + 1, column + 1));
-            adjIntersections.add(new Pair<>(row + 1, column - 1));
-            return adjIntersections;
+        NeighbourTable neighbourTable = engine.getNeighbourTable();
+        int index = engine.getIntersectionIndex(row, column);
+        for (int position = neighbourTable.firstOf(index); position < neighbourTable.endOf(index); position++) {
+            int adjIndex = neighbourTable.neighbourAt(position);
+            adjIntersections.add(new Pair<>(engine.getRowOfIndex(adjIndex), engine.getColumnOfIndex(adjIndex)));
         }
-        adjIntersections.add(new Pair<>(row, column + 1));
-        adjIntersections.add(new Pair<>(row - 1, column + 1));
-        adjIntersections.add(new Pair<>(row + 1, column + 1));
-        adjIntersections.add(new Pair<>(row - 1, column));
-        adjIntersections.add(new Pair<>(row + 1, column));
-        adjIntersections.add(new Pair<>(row - 1, column - 1));
-        adjIntersections.add(new Pair<>(row, column - 1));
-        adjIntersections.add(new Pair<>(row + 1, column - 1));
         return adjIntersections;
     }
 
+    public NeighbourTable getNeighbourTable() {
+        return engine.getNeighbourTable();
+    }
+
+    public int getIntersectionIndex(int row, int column) {
+        return engine.getIntersectionIndex(row, column);
+    }
+
     public boolean isLastColumn(int column) {
-        return column == LAST_COLUMN;
+        return column == getLastColumn();
     }
 
     public boolean isFirstColumn(int column) {
@@ -135,22 +193,37 @@ public class Board {
     }
 
     public boolean isLastRow(int row) {
-        return row == LAST_ROW;
+        return row == getLastRow();
     }
 
     public boolean isFirstRow(int row) {
         return row == FIRST_ROW;
     }
 
-    public static void resetBoard() {
-        FIRST_ROW = 1;
-        FIRST_COLUMN = 1;
-        LAST_ROW = 19;
-        LAST_COLUMN = 19;
+    public boolean isIntersectionOccupied(int row, int column) {
+        return engine.isIntersectionOccupied(row, column);
     }
 
-    public boolean isIntersectionOccupied(int row, int column) {
-        return !getStoneColorAt(row, column).equals(PlayerColor.NONE);
+    public static int toStone(PlayerColor playerColor) {
+        switch (playerColor) {
+            case WHITE:
+                return Stone.WHITE;
+            case BLACK:
+                return Stone.BLACK;
+            default:
+                return Stone.EMPTY;
+        }
+    }
+
+    public static PlayerColor toPlayerColor(int stone) {
+        switch (stone) {
+            case Stone.WHITE:
+                return PlayerColor.WHITE;
+            case Stone.BLACK:
+                return PlayerColor.BLACK;
+            default:
+                return PlayerColor.NONE;
+        }
     }
 
     public String getAsString(Player player) {
@@ -159,7 +232,7 @@ public class Board {
         stringJoiner.add(System.lineSeparator());
         String rowSeparator = constructRowSeparator();
         stringJoiner.add(rowSeparator);
-        IntStream.range(Board.FIRST_ROW, Board.LAST_ROW + 1)
+        IntStream.range(FIRST_ROW, getLastRow() + 1)
                 .forEach(row -> {
                     stringJoiner.add(String.valueOf(row));
                     if (row < 10) {
@@ -176,8 +249,8 @@ public class Board {
 
     public Collection<Pair<Integer, Integer>> getEmptyIntersections() {
         Collection<Pair<Integer, Integer>> emptyIntersections = new ArrayList<>();
-        IntStream.range(Board.FIRST_ROW, Board.LAST_ROW + 1)
-                .forEach((row) -> IntStream.range(Board.FIRST_COLUMN, Board.LAST_COLUMN + 1)
+        IntStream.range(FIRST_ROW, getLastRow() + 1)
+                .forEach((row) -> IntStream.range(FIRST_COLUMN, getLastColumn() + 1)
                         .filter((column) -> !isIntersectionOccupied(row, column))
                         .forEach((column) -> emptyIntersections.add(new Pair<>(row, column))));
 
@@ -187,7 +260,7 @@ public class Board {
     private String constructColumnEnumeration() {
         StringJoiner stringJoiner = new StringJoiner("");
         stringJoiner.add("     ");
-        IntStream.range(Board.FIRST_COLUMN, Board.LAST_COLUMN + 1)
+        IntStream.range(FIRST_COLUMN, getLastColumn() + 1)
                 .forEach(col -> {
                     stringJoiner.add(String.valueOf(col));
                     if (col < 10) {
@@ -201,7 +274,7 @@ public class Board {
     }
 
     private String constructRow(int row) {
-        return IntStream.range(Board.FIRST_COLUMN, Board.LAST_COLUMN + 1)
+        return IntStream.range(FIRST_COLUMN, getLastColumn() + 1)
                 .mapToObj(col -> "| " + getStoneColorAt(row, col).asSymbol() + " ")
                 .collect(Collectors.joining()) +
                 "| \n";
@@ -219,7 +292,7 @@ public class Board {
     private String constructRowSeparator() {
         StringJoiner stringJoiner = new StringJoiner("");
         stringJoiner.add("   -");
-        IntStream.range(Board.FIRST_ROW, Board.LAST_ROW + 1)
+        IntStream.range(FIRST_COLUMN, getLastColumn() + 1)
                 .forEach(i -> stringJoiner.add("----"));
         stringJoiner.add(" \n");
         return stringJoiner.toString();
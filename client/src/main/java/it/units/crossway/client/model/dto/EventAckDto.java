@@ -0,0 +1,16 @@
+package it.units.crossway.client.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EventAckDto {
+
+    private String gameKey;
+    private String event;
+    private Long idempotencyKey;
+
+}
@@ -0,0 +1,14 @@
+package it.units.crossway.client.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EventErrorDto {
+
+    private String message;
+
+}
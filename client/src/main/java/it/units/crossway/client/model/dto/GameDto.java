@@ -1,5 +1,7 @@
 package it.units.crossway.client.model.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import it.units.crossway.client.model.Board;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -12,5 +14,19 @@ public class GameDto {
     private String uuid;
     private String whitePlayerNickname;
     private String blackPlayerNickname;
+    private int boardSize = Board.DEFAULT_SIZE;
+    private String id;
+
+    public GameDto(String uuid, String whitePlayerNickname, String blackPlayerNickname) {
+        this.uuid = uuid;
+        this.whitePlayerNickname = whitePlayerNickname;
+        this.blackPlayerNickname = blackPlayerNickname;
+    }
+
+    // the compact id routes the game when the server issued one, otherwise the uuid does
+    @JsonIgnore
+    public String getRoutingKey() {
+        return id != null ? id : uuid;
+    }
 
 }
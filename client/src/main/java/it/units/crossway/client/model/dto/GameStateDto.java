@@ -0,0 +1,24 @@
+package it.units.crossway.client.model.dto;
+
+import it.units.crossway.core.GameEvent;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class GameStateDto {
+
+    private String id;
+    private String uuid;
+    private String whitePlayerNickname;
+    private String blackPlayerNickname;
+    private int boardSize;
+    private long sequence;
+    private List<GameEvent> events;
+    private String stones;
+
+}
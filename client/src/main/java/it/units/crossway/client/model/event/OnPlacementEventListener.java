@@ -5,4 +5,9 @@ import it.units.crossway.client.model.StonePlacementIntent;
 @FunctionalInterface
 public interface OnPlacementEventListener {
     void onPlacementEvent(StonePlacementIntent stonePlacementIntent);
+
+    // the server follows a winning placement with its win event, so no further turn should start after it
+    default void onWinningPlacementEvent(StonePlacementIntent stonePlacementIntent) {
+        onPlacementEvent(stonePlacementIntent);
+    }
 }
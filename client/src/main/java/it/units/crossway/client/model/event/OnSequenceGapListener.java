@@ -0,0 +1,10 @@
+package it.units.crossway.client.model.event;
+
+import it.units.crossway.core.GameEvent;
+
+import java.util.List;
+
+@FunctionalInterface
+public interface OnSequenceGapListener {
+    List<GameEvent> onSequenceGap(long lastSequence);
+}
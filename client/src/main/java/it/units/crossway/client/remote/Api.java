@@ -3,21 +3,28 @@ package it.units.crossway.client.remote;
 import feign.Response;
 import it.units.crossway.client.model.dto.GameCreationIntent;
 import it.units.crossway.client.model.dto.GameDto;
+import it.units.crossway.client.model.dto.GameStateDto;
 import it.units.crossway.client.model.dto.PlayerDto;
 import it.units.crossway.client.model.dto.StonePlacementIntentDto;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 
 @FeignClient(name = "api", url = "http://localhost:9111")
 public interface Api {
 
+    String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // one page of the lobby, the cursor of the next one comes in the NEXT_CURSOR_HEADER
     @RequestMapping(method = RequestMethod.GET, value = "/games/available")
-    List<GameDto> getAllAvailableGames();
+    Response getAvailableGames(@RequestParam("cursor") long cursor, @RequestParam("limit") int limit);
 
     @RequestMapping(method = RequestMethod.POST, value = "/players")
     PlayerDto addPlayer(@RequestBody PlayerDto playerDto);
@@ -31,13 +38,18 @@ public interface Api {
     @RequestMapping(method = RequestMethod.DELETE, value = "/games/{uuid}")
     Response deleteGameByUuid(@PathVariable String uuid);
 
+    @RequestMapping(method = RequestMethod.GET, value = "/games/{uuid}/state")
+    GameStateDto getGameState(@PathVariable String uuid, @RequestParam("since") long since);
+
     @RequestMapping(method = RequestMethod.POST, value = "/games/{uuid}/events/joining")
     GameDto joinGame(@PathVariable String uuid, @RequestBody PlayerDto playerDto);
 
     @RequestMapping(method = RequestMethod.POST, value = "/games/{uuid}/events/placement")
-    Response placeStone(@PathVariable String uuid, @RequestBody StonePlacementIntentDto stonePlacementIntentDto);
+    Response placeStone(@PathVariable String uuid, @RequestHeader(IDEMPOTENCY_KEY_HEADER) long idempotencyKey,
+                        @RequestBody StonePlacementIntentDto stonePlacementIntentDto);
 
     @RequestMapping(method = RequestMethod.POST, value = "/games/{uuid}/events/pie-rule")
-    Response acceptPieRule(@PathVariable String uuid, @RequestBody PlayerDto playerDto);
+    Response acceptPieRule(@PathVariable String uuid, @RequestHeader(IDEMPOTENCY_KEY_HEADER) long idempotencyKey,
+                           @RequestBody PlayerDto playerDto);
 
 }
@@ -0,0 +1,47 @@
+package it.units.crossway.client.remote;
+
+import it.units.crossway.core.GameEvent;
+import it.units.crossway.core.GameEventCodec;
+import it.units.crossway.core.GameEventEnvelope;
+import org.springframework.lang.Nullable;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.messaging.converter.MessageConversionException;
+import org.springframework.util.MimeType;
+
+// Converts game events and their envelopes from and to their binary form, but only for messages that declare
+// its content type, so JSON sessions keep going through Jackson
+public class GameEventMessageConverter extends AbstractMessageConverter {
+
+    public static final MimeType MIME_TYPE = MimeType.valueOf(GameEventCodec.MIME_TYPE);
+
+    public GameEventMessageConverter() {
+        super(MIME_TYPE);
+        setStrictContentTypeMatch(true);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return GameEvent.class.equals(clazz) || GameEventEnvelope.class.equals(clazz);
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, @Nullable Object conversionHint) {
+        try {
+            byte[] bytes = (byte[]) message.getPayload();
+            return GameEventEnvelope.class.equals(targetClass)
+                    ? GameEventCodec.decodeEnvelope(bytes)
+                    : GameEventCodec.decode(bytes);
+        } catch (IllegalArgumentException e) {
+            throw new MessageConversionException(message, e.getMessage(), e);
+        }
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, @Nullable MessageHeaders headers, @Nullable Object conversionHint) {
+        return payload instanceof GameEventEnvelope
+                ? GameEventCodec.encode((GameEventEnvelope) payload)
+                : GameEventCodec.encode((GameEvent) payload);
+    }
+}
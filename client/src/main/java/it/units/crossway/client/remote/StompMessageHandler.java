@@ -4,14 +4,19 @@ import it.units.crossway.client.model.StonePlacementIntent;
 import it.units.crossway.client.model.event.OnJoinEventListener;
 import it.units.crossway.client.model.event.OnPieRuleEventListener;
 import it.units.crossway.client.model.event.OnPlacementEventListener;
+import it.units.crossway.client.model.event.OnSequenceGapListener;
 import it.units.crossway.client.model.event.OnWinEventListener;
+import it.units.crossway.core.GameEvent;
+import it.units.crossway.core.GameEventEnvelope;
 import lombok.Data;
 import lombok.NonNull;
 import org.springframework.messaging.simp.stomp.StompFrameHandler;
 import org.springframework.messaging.simp.stomp.StompHeaders;
 
 import java.lang.reflect.Type;
+import java.util.List;
 
+// Every frame is an envelope, in JSON or in binary depending on the topic; its events are dispatched in order
 @Data
 public class StompMessageHandler implements StompFrameHandler {
 
@@ -19,29 +24,64 @@ public class StompMessageHandler implements StompFrameHandler {
     private OnPieRuleEventListener pieRuleEventListener;
     private OnWinEventListener winEventListener;
     private OnPlacementEventListener placementEventListener;
+    private OnSequenceGapListener sequenceGapListener;
+    private long lastSequence;
 
     @Override
     @NonNull
     public Type getPayloadType(@NonNull StompHeaders headers) {
-        return StonePlacementIntent.class;
+        return GameEventEnvelope.class;
     }
 
     @Override
-    public void handleFrame(@NonNull StompHeaders headers, Object payload) {
-        if (headers.containsKey("join-event")) {
-            joinEventListener.onJoinEvent(headers.getFirst("join-event"));
-            return;
-        }
-        if (headers.containsKey("pie-rule-event")) {
-            pieRuleEventListener.onPieRuleEvent(headers.getFirst("pie-rule-event"));
-            return;
+    public synchronized void handleFrame(@NonNull StompHeaders headers, Object payload) {
+        handleGameEvents(((GameEventEnvelope) payload).getEvents(), true);
+    }
+
+    // called once the session is (re)opened, to handle the events published while it was down
+    public synchronized void catchUp() {
+        if (sequenceGapListener != null) {
+            handleGameEvents(sequenceGapListener.onSequenceGap(lastSequence), false);
         }
-        if (headers.containsKey("win-event")) {
-            winEventListener.onWinEvent(headers.getFirst("win-event"));
-            return;
+    }
+
+    private void handleGameEvents(List<GameEvent> gameEvents, boolean fetchMissedEvents) {
+        for (int i = 0; i < gameEvents.size(); i++) {
+            GameEvent gameEvent = gameEvents.get(i);
+            // a frame ahead of the next sequence means some were missed, those are fetched and handled first
+            if (fetchMissedEvents && gameEvent.getSequence() > lastSequence + 1) {
+                catchUp();
+            }
+            // a redelivered or late event carries a sequence that was already handled
+            if (gameEvent.getSequence() <= lastSequence) {
+                continue;
+            }
+            lastSequence = gameEvent.getSequence();
+            boolean isFollowedByWin = i + 1 < gameEvents.size() && gameEvents.get(i + 1).getKind() == GameEvent.Kind.WIN;
+            handleGameEvent(gameEvent, isFollowedByWin);
         }
-        if (payload instanceof StonePlacementIntent) {
-            placementEventListener.onPlacementEvent((StonePlacementIntent) payload);
+    }
+
+    private void handleGameEvent(GameEvent gameEvent, boolean isFollowedByWin) {
+        switch (gameEvent.getKind()) {
+            case JOIN:
+                joinEventListener.onJoinEvent(gameEvent.getNickname());
+                break;
+            case PIE_RULE:
+                pieRuleEventListener.onPieRuleEvent(gameEvent.getNickname());
+                break;
+            case WIN:
+                winEventListener.onWinEvent(gameEvent.getNickname());
+                break;
+            case PLACEMENT:
+                StonePlacementIntent stonePlacementIntent =
+                        new StonePlacementIntent(gameEvent.getRow(), gameEvent.getColumn(), null);
+                if (isFollowedByWin) {
+                    placementEventListener.onWinningPlacementEvent(stonePlacementIntent);
+                } else {
+                    placementEventListener.onPlacementEvent(stonePlacementIntent);
+                }
+                break;
         }
     }
 }
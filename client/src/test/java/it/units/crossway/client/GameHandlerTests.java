@@ -13,10 +13,14 @@ import it.units.crossway.client.exception.InvalidUserInputException;
 import it.units.crossway.client.model.*;
 import it.units.crossway.client.model.dto.GameCreationIntent;
 import it.units.crossway.client.model.dto.GameDto;
+import it.units.crossway.client.model.dto.GameStateDto;
 import it.units.crossway.client.model.dto.PlayerDto;
 import it.units.crossway.client.model.dto.StonePlacementIntentDto;
 import it.units.crossway.client.remote.Api;
+import it.units.crossway.client.remote.GameEventMessageConverter;
 import it.units.crossway.client.remote.StompMessageHandler;
+import it.units.crossway.core.GameEvent;
+import it.units.crossway.core.GameEventEnvelope;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeAll;
@@ -24,10 +28,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cloud.openfeign.support.SpringMvcContract;
 import org.springframework.messaging.simp.stomp.StompHeaders;
+import org.springframework.messaging.simp.stomp.StompSession;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -36,6 +42,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
 import java.util.UUID;
+import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.*;
@@ -242,7 +249,7 @@ public class GameHandlerTests {
         availableGames.add(gameDto1);
         availableGames.add(gameDto2);
         String jsonAvailableGames = om.writeValueAsString(availableGames);
-        wireMockServer.stubFor(get(urlEqualTo("/games/available"))
+        wireMockServer.stubFor(get(urlPathEqualTo("/games/available"))
                 .willReturn(aResponse()
                         .withStatus(200)
                         .withBody(jsonAvailableGames)));
@@ -253,7 +260,7 @@ public class GameHandlerTests {
         String input = JOIN_GAME_CHOICE + System.lineSeparator() + "1" + System.lineSeparator();
         IOUtils.redirectScannerToSimulatedInput(input);
         gameHandler.chooseGameType();
-        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/games/available")));
+        wireMockServer.verify(1, getRequestedFor(urlPathEqualTo("/games/available")));
     }
 
     @Test
@@ -272,7 +279,7 @@ public class GameHandlerTests {
         availableGames.add(gameDto1);
         availableGames.add(gameDto2);
         String jsonAvailableGames = om.writeValueAsString(availableGames);
-        wireMockServer.stubFor(get(urlEqualTo("/games/available"))
+        wireMockServer.stubFor(get(urlPathEqualTo("/games/available"))
                 .willReturn(aResponse()
                         .withStatus(200)
                         .withBody(jsonAvailableGames)));
@@ -289,6 +296,37 @@ public class GameHandlerTests {
         assertTrue(byteArrayOutputStream.toString().contains("opponent is blackP2"));
     }
 
+    @Test
+    void whenAvailableGamesSpanManyPagesShouldFollowNextCursorAndListThemAll() throws JsonProcessingException {
+        Api api = buildAndReturnFeignClient();
+        GameHandler gameHandler = new GameHandler(new Player(), new Board(), new Turn(), api, frame);
+        ObjectMapper om = new ObjectMapper();
+        GameDto gameDto1 = new GameDto(UUID.randomUUID().toString(), null, "blackP1");
+        GameDto gameDto2 = new GameDto(UUID.randomUUID().toString(), null, "blackP2");
+        wireMockServer.stubFor(get(urlPathEqualTo("/games/available"))
+                .withQueryParam("cursor", equalTo("0"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withHeader(Api.NEXT_CURSOR_HEADER, "431712936372224000")
+                        .withBody(om.writeValueAsString(List.of(gameDto1)))));
+        wireMockServer.stubFor(get(urlPathEqualTo("/games/available"))
+                .withQueryParam("cursor", equalTo("431712936372224000"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody(om.writeValueAsString(List.of(gameDto2)))));
+        wireMockServer.stubFor(post(urlEqualTo("/games/" + gameDto2.getUuid() + "/events/joining"))
+                .willReturn(aResponse()
+                        .withStatus(200)
+                        .withBody(om.writeValueAsString(gameDto2))));
+        IOUtils.redirectScannerToSimulatedInput(JOIN_GAME_CHOICE + System.lineSeparator() + "2" + System.lineSeparator());
+        ByteArrayOutputStream byteArrayOutputStream = IOUtils.redirectSystemOutToByteArrayOS();
+        gameHandler.chooseGameType();
+        assertTrue(byteArrayOutputStream.toString().contains("opponent is blackP1"));
+        assertTrue(byteArrayOutputStream.toString().contains("opponent is blackP2"));
+        assertEquals(gameDto2.getUuid(), gameHandler.getUuid());
+        wireMockServer.verify(2, getRequestedFor(urlPathEqualTo("/games/available")));
+    }
+
     @Test
     void whenPlayerSelectsAnAvailableGameShouldSendJoinGameReq() throws JsonProcessingException {
         Api api = buildAndReturnFeignClient();
@@ -305,7 +343,7 @@ public class GameHandlerTests {
         availableGames.add(gameDto1);
         availableGames.add(gameDto2);
         String jsonAvailableGames = om.writeValueAsString(availableGames);
-        wireMockServer.stubFor(get(urlEqualTo("/games/available"))
+        wireMockServer.stubFor(get(urlPathEqualTo("/games/available"))
                 .willReturn(aResponse()
                         .withStatus(200)
                         .withBody(jsonAvailableGames)));
@@ -335,7 +373,7 @@ public class GameHandlerTests {
         availableGames.add(gameDto1);
         availableGames.add(gameDto2);
         String jsonAvailableGames = om.writeValueAsString(availableGames);
-        wireMockServer.stubFor(get(urlEqualTo("/games/available"))
+        wireMockServer.stubFor(get(urlPathEqualTo("/games/available"))
                 .willReturn(aResponse()
                         .withStatus(200)
                         .withBody(jsonAvailableGames)));
@@ -358,10 +396,10 @@ public class GameHandlerTests {
         GameHandler gameHandler = new GameHandler(player, board, turn, api, frame);
         StompMessageHandler stompMessageHandler = new StompMessageHandler();
         stompMessageHandler.setPlacementEventListener(gameHandler);
-        StonePlacementIntent stonePlacementIntent = new StonePlacementIntent();
-        stompMessageHandler.handleFrame(new StompHeaders(), stonePlacementIntent);
+        GameEvent placement = GameEvent.placement(3, "playerW", 5, 5);
+        stompMessageHandler.handleFrame(new StompHeaders(), GameEventEnvelope.of(placement));
         assertEquals(PlayerColor.BLACK,
-                gameHandler.getBoard().getStoneColorAt(stonePlacementIntent.getRow(), stonePlacementIntent.getColumn())
+                gameHandler.getBoard().getStoneColorAt(placement.getRow(), placement.getColumn())
         );
     }
 
@@ -373,12 +411,98 @@ public class GameHandlerTests {
         GameHandler gameHandler = new GameHandler(player, board, turn, api, frame);
         StompMessageHandler stompMessageHandler = new StompMessageHandler();
         stompMessageHandler.setPlacementEventListener(gameHandler);
-        StonePlacementIntent stonePlacementIntent = new StonePlacementIntent();
-        stompMessageHandler.handleFrame(new StompHeaders(), stonePlacementIntent);
+        stompMessageHandler.handleFrame(new StompHeaders(),
+                GameEventEnvelope.of(GameEvent.placement(4, "playerB", 5, 5)));
         assertEquals(5, gameHandler.getTurn().getTurnNumber());
         assertEquals(PlayerColor.BLACK, gameHandler.getTurn().getTurnColor());
     }
 
+    @Test
+    void whenOwnPlacementComesBackShouldSettlePendingSubmission() {
+        Board board = new Board();
+        Player player = new Player("playerB", PlayerColor.BLACK);
+        Turn turn = new Turn(3, PlayerColor.BLACK);
+        GameHandler gameHandler = new GameHandler(player, board, turn, api, frame);
+        StompSession stompSession = Mockito.mock(StompSession.class);
+        Mockito.when(stompSession.isConnected()).thenReturn(true);
+        gameHandler.setStompSession(stompSession);
+        StompMessageHandler stompMessageHandler = new StompMessageHandler();
+        stompMessageHandler.setPlacementEventListener(gameHandler);
+        IOUtils.redirectScannerToSimulatedInput("6,6" + System.lineSeparator());
+        gameHandler.playTurnIfSupposedTo();
+        Mockito.verify(stompSession).send(Mockito.any(StompHeaders.class), Mockito.any());
+        assertNotNull(gameHandler.getPendingSubmission().get());
+        stompMessageHandler.handleFrame(new StompHeaders(),
+                GameEventEnvelope.of(GameEvent.placement(3, "playerB", 6, 6)));
+        assertNull(gameHandler.getPendingSubmission().get());
+    }
+
+    @Test
+    void whenPlacementEventIsDeliveredTwiceShouldApplyItOnce() {
+        Board board = new Board();
+        Player player = new Player("playerW", PlayerColor.WHITE);
+        Turn turn = new Turn(4, PlayerColor.WHITE);
+        GameHandler gameHandler = new GameHandler(player, board, turn, api, frame);
+        StompMessageHandler stompMessageHandler = new StompMessageHandler();
+        stompMessageHandler.setPlacementEventListener(gameHandler);
+        GameEventEnvelope envelope = GameEventEnvelope.of(GameEvent.placement(4, "playerB", 5, 5));
+        stompMessageHandler.handleFrame(new StompHeaders(), envelope);
+        stompMessageHandler.handleFrame(new StompHeaders(), envelope);
+        assertEquals(5, gameHandler.getTurn().getTurnNumber());
+    }
+
+    @Test
+    void whenEventSkipsSequencesShouldFetchAndApplyMissedEventsFirst() {
+        List<Long> requestedSequences = new ArrayList<>();
+        List<StonePlacementIntent> placements = new ArrayList<>();
+        StompMessageHandler stompMessageHandler = new StompMessageHandler();
+        stompMessageHandler.setLastSequence(1);
+        stompMessageHandler.setPlacementEventListener(placements::add);
+        stompMessageHandler.setSequenceGapListener(lastSequence -> {
+            requestedSequences.add(lastSequence);
+            return List.of(GameEvent.placement(2, "playerB", 1, 1), GameEvent.placement(3, "playerW", 2, 2));
+        });
+        stompMessageHandler.handleFrame(new StompHeaders(),
+                GameEventEnvelope.of(GameEvent.placement(4, "playerB", 3, 3)));
+        assertEquals(List.of(1L), requestedSequences);
+        assertEquals(List.of(1, 2, 3), placements.stream()
+                .map(StonePlacementIntent::getRow)
+                .collect(Collectors.toList()));
+        assertEquals(4, stompMessageHandler.getLastSequence());
+    }
+
+    @Test
+    void whenSequenceGapIsDetectedShouldFetchGameStateSinceLastSequence() throws JsonProcessingException {
+        Api api = buildAndReturnFeignClient();
+        Player player = new Player("playerW", PlayerColor.WHITE);
+        GameHandler gameHandler = new GameHandler(player, new Board(), new Turn(), api, frame);
+        String uuid = UUID.randomUUID().toString();
+        gameHandler.setUuid(uuid);
+        GameEvent missedPlacement = GameEvent.placement(3, "playerB", 5, 5);
+        GameStateDto gameStateDto = new GameStateDto(null, uuid, "playerW", "playerB", Board.DEFAULT_SIZE,
+                3, List.of(missedPlacement), null);
+        wireMockServer.stubFor(get(urlEqualTo("/games/" + uuid + "/state?since=2"))
+                .willReturn(okJson(new ObjectMapper().writeValueAsString(gameStateDto))));
+        assertEquals(List.of(missedPlacement), gameHandler.onSequenceGap(2));
+        wireMockServer.verify(1, getRequestedFor(urlEqualTo("/games/" + uuid + "/state?since=2")));
+    }
+
+    @Test
+    void whenBinaryPlacementEventIsReceivedShouldPlaceStoneAndGoToNextTurn() {
+        Board board = new Board();
+        Player player = new Player("playerW", PlayerColor.WHITE);
+        Turn turn = new Turn(4, PlayerColor.WHITE);
+        GameHandler gameHandler = new GameHandler(player, board, turn, api, frame);
+        StompMessageHandler stompMessageHandler = new StompMessageHandler();
+        stompMessageHandler.setPlacementEventListener(gameHandler);
+        StompHeaders headers = new StompHeaders();
+        headers.setContentType(GameEventMessageConverter.MIME_TYPE);
+        assertEquals(GameEventEnvelope.class, stompMessageHandler.getPayloadType(headers));
+        stompMessageHandler.handleFrame(headers, GameEventEnvelope.of(GameEvent.placement(4, "playerB", 3, 4)));
+        assertEquals(PlayerColor.WHITE, gameHandler.getBoard().getStoneColorAt(3, 4));
+        assertEquals(5, gameHandler.getTurn().getTurnNumber());
+    }
+
     @Test
     void givenBlackPlayerWhenGameStartsShouldPlayTurn() {
         Api api = buildAndReturnFeignClient();
@@ -495,67 +619,90 @@ public class GameHandlerTests {
         GameHandler gameHandler = new GameHandler(player, board, turn, api, frame);
         StompMessageHandler stompMessageHandler = new StompMessageHandler();
         stompMessageHandler.setJoinEventListener(gameHandler);
-        StompHeaders stompHeaders = new StompHeaders();
-        stompHeaders.set("join-event", "playerW");
         wireMockServer.stubFor(post(anyUrl()));
         ByteArrayOutputStream byteArrayOutputStream = IOUtils.redirectSystemOutToByteArrayOS();
         IOUtils.redirectScannerToSimulatedInput("6,6" + System.lineSeparator());
-        stompMessageHandler.handleFrame(stompHeaders, "");
+        stompMessageHandler.handleFrame(new StompHeaders(),
+                GameEventEnvelope.of(GameEvent.of(GameEvent.Kind.JOIN, 1, "playerW")));
         assertTrue(byteArrayOutputStream.toString().contains("Game start!!"));
         assertEquals(1, gameHandler.getTurn().getTurnNumber());
         assertTrue(byteArrayOutputStream.toString().contains(Frame.IO_INSERT_VALID_PLACEMENT));
     }
 
     @Test
-    void whenPlayerWinsShouldSendWinGameReq() throws Exception {
+    void whenPlayerWinsShouldLeaveGameDeletionToServer() throws Exception {
         Api api = buildAndReturnFeignClient();
         Player player = new Player("playerB", PlayerColor.BLACK);
         Board board = new Board();
-        for (int i = Board.FIRST_ROW; i <= Board.LAST_ROW; i++) {
+        for (int i = Board.FIRST_ROW; i < board.getLastRow(); i++) {
             board.placeStone(i, 3, player.getColor());
         }
         Turn turn = new Turn(20, PlayerColor.BLACK);
         String uuid = UUID.randomUUID().toString();
         GameHandler gameHandler = new GameHandler(player, board, turn, api, frame);
         gameHandler.setUuid(uuid);
-        wireMockServer.stubFor(post(urlEqualTo("/games/" + uuid + "/play")));
+        StompMessageHandler stompMessageHandler = new StompMessageHandler();
+        stompMessageHandler.setPlacementEventListener(gameHandler);
+        stompMessageHandler.setWinEventListener(gameHandler);
         wireMockServer.stubFor(delete(urlEqualTo("/games/" + uuid)));
         wireMockServer.stubFor(delete(urlEqualTo("/players/" + player.getNickname())));
-        IOUtils.redirectScannerToSimulatedInput(Board.LAST_ROW + ",4" + System.lineSeparator());
-        gameHandler.playTurnIfSupposedTo();
-        SystemLambda.catchSystemExit(gameHandler::endTurn);
-        wireMockServer.verify(1, deleteRequestedFor(urlEqualTo("/games/" + uuid)));
+        SystemLambda.catchSystemExit(() -> stompMessageHandler.handleFrame(new StompHeaders(), GameEventEnvelope.of(
+                GameEvent.placement(20, "playerB", board.getLastRow(), 3),
+                GameEvent.of(GameEvent.Kind.WIN, 21, "playerB"))));
+        wireMockServer.verify(0, deleteRequestedFor(urlEqualTo("/games/" + uuid)));
+        wireMockServer.verify(1, deleteRequestedFor(urlEqualTo("/players/" + player.getNickname())));
+    }
+
+    @Test
+    void whenWinEventIsReceivedForOpponentShouldShowLoseMessageAndEndGame() throws Exception {
+        Api api = buildAndReturnFeignClient();
+        Player player = new Player("playerW", PlayerColor.WHITE);
+        GameHandler gameHandler = new GameHandler(player, new Board(), new Turn(20, PlayerColor.BLACK), api, frame);
+        StompMessageHandler stompMessageHandler = new StompMessageHandler();
+        stompMessageHandler.setWinEventListener(gameHandler);
+        wireMockServer.stubFor(delete(anyUrl()));
+        ByteArrayOutputStream byteArrayOutputStream = IOUtils.redirectSystemOutToByteArrayOS();
+        SystemLambda.catchSystemExit(() -> stompMessageHandler.handleFrame(new StompHeaders(),
+                GameEventEnvelope.of(GameEvent.of(GameEvent.Kind.WIN, 40, "playerB"))));
+        assertTrue(byteArrayOutputStream.toString().contains(Frame.LOSE_MESSAGE));
         wireMockServer.verify(1, deleteRequestedFor(urlEqualTo("/players/" + player.getNickname())));
     }
 
     @Test
-    void givenWinningBoardForPlayerWhenEndTurnShouldShowWinMessageAndEndGame() throws Exception {
+    void whenWinningPlacementIsReceivedForPlayerShouldShowStoneAndWinMessageAndEndGame() throws Exception {
         Api api = buildAndReturnFeignClient();
         Player player = new Player("playerB", PlayerColor.BLACK);
         Board board = new Board();
-        IntStream.range(Board.FIRST_ROW, Board.LAST_ROW + 1)
+        IntStream.range(Board.FIRST_ROW, board.getLastRow())
                 .forEach(row -> board.placeStone(row, 5, player.getColor()));
         Turn turn = new Turn(20, player.getColor());
         GameHandler gameHandler = new GameHandler(player, board, turn, api, frame);
+        StompMessageHandler stompMessageHandler = new StompMessageHandler();
+        stompMessageHandler.setPlacementEventListener(gameHandler);
+        stompMessageHandler.setWinEventListener(gameHandler);
         wireMockServer.stubFor(delete(anyUrl()));
         ByteArrayOutputStream byteArrayOutputStream = IOUtils.redirectSystemOutToByteArrayOS();
-        SystemLambda.catchSystemExit(gameHandler::endTurn);
+        SystemLambda.catchSystemExit(() -> stompMessageHandler.handleFrame(new StompHeaders(), GameEventEnvelope.of(
+                GameEvent.placement(20, "playerB", board.getLastRow(), 5),
+                GameEvent.of(GameEvent.Kind.WIN, 21, "playerB"))));
+        assertEquals(PlayerColor.BLACK, board.getStoneColorAt(board.getLastRow(), 5));
         assertTrue(byteArrayOutputStream.toString().contains(Frame.WIN_MESSAGE));
     }
 
     @Test
-    void givenWinningBoardForOpponentWhenEndTurnShouldShowLoseMessageAndEndGame() throws Exception {
+    void givenWinningBoardForOpponentWhenEndTurnShouldWaitForWinEvent() {
         Api api = buildAndReturnFeignClient();
         Player player = new Player("playerW", PlayerColor.WHITE);
         Board board = new Board();
-        IntStream.range(Board.FIRST_ROW, Board.LAST_ROW + 1)
+        IntStream.range(Board.FIRST_ROW, board.getLastRow() + 1)
                 .forEach(row -> board.placeStone(row, 5, player.getColor().getOpposite()));
         Turn turn = new Turn(20, player.getColor().getOpposite());
         GameHandler gameHandler = new GameHandler(player, board, turn, api, frame);
         wireMockServer.stubFor(delete(anyUrl()));
         ByteArrayOutputStream byteArrayOutputStream = IOUtils.redirectSystemOutToByteArrayOS();
-        SystemLambda.catchSystemExit(gameHandler::endTurn);
-        assertTrue(byteArrayOutputStream.toString().contains(Frame.LOSE_MESSAGE));
+        gameHandler.endTurn();
+        assertFalse(byteArrayOutputStream.toString().contains(Frame.LOSE_MESSAGE));
+        wireMockServer.verify(0, deleteRequestedFor(anyUrl()));
     }
 
     @Test
@@ -570,9 +717,8 @@ public class GameHandlerTests {
         IOUtils.redirectScannerToSimulatedInput("6,6" + System.lineSeparator());
         StompMessageHandler stompMessageHandler = new StompMessageHandler();
         stompMessageHandler.setPieRuleEventListener(gameHandler);
-        StompHeaders stompHeaders = new StompHeaders();
-        stompHeaders.set("pie-rule-event", "true");
-        stompMessageHandler.handleFrame(stompHeaders, "");
+        stompMessageHandler.handleFrame(new StompHeaders(),
+                GameEventEnvelope.of(GameEvent.of(GameEvent.Kind.PIE_RULE, 3, "playerW")));
         assertEquals(2, gameHandler.getTurn().getTurnNumber());
         assertEquals(PlayerColor.WHITE, gameHandler.getTurn().getTurnColor());
         assertTrue(byteArrayOutputStream.toString().contains(Frame.IO_INSERT_VALID_PLACEMENT));
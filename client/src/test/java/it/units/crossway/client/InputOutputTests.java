@@ -35,13 +35,10 @@ public class InputOutputTests {
                         System.lineSeparator() + System.lineSeparator();
         ByteArrayOutputStream baos = IOUtils.redirectSystemOutToByteArrayOS();
         Player player = new Player("blackP", PlayerColor.BLACK);
-        Board board = new Board();
-        Board.LAST_COLUMN = 2;
-        Board.LAST_ROW = 2;
+        Board board = new Board(2, 2);
         System.out.println(board.getAsString(player));
         String printedBoard = baos.toString();
         assertEquals(board2x2, printedBoard);
-        Board.resetBoard();
     }
 
     @Test
@@ -66,13 +63,10 @@ public class InputOutputTests {
                         System.lineSeparator() + System.lineSeparator();
         ByteArrayOutputStream baos = IOUtils.redirectSystemOutToByteArrayOS();
         Player player = new Player("blackP", PlayerColor.BLACK);
-        Board board = new Board();
-        Board.LAST_COLUMN = 10;
-        Board.LAST_ROW = 10;
+        Board board = new Board(10, 10);
         System.out.println(board.getAsString(player));
         String printedBoard = baos.toString();
         assertEquals(expectedBoard10x10, printedBoard);
-        Board.resetBoard();
     }
 
 }
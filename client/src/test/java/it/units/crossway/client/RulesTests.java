@@ -5,6 +5,7 @@ import it.units.crossway.client.model.Board;
 import it.units.crossway.client.model.Player;
 import it.units.crossway.client.model.PlayerColor;
 import it.units.crossway.client.model.StonePlacementIntent;
+import it.units.crossway.client.model.Turn;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -59,12 +60,24 @@ public class RulesTests {
         assertThrows(PlacementViolationException.class, () -> Rules.validatePlacementIntent(presetBoard, stonePlacementIntent));
     }
 
+    @ParameterizedTest
+    @CsvSource({"BLACK,WHITE", "WHITE,BLACK"})
+    void whenCornerPlacementCompletesDiagonalViolationShouldThrowException(PlayerColor player1, PlayerColor player2) {
+        Board presetBoard = new Board();
+        presetBoard.placeStone(presetBoard.getLastRow() - 1, presetBoard.getLastColumn(), player1);
+        presetBoard.placeStone(presetBoard.getLastRow(), presetBoard.getLastColumn() - 1, player1);
+        presetBoard.placeStone(presetBoard.getLastRow() - 1, presetBoard.getLastColumn() - 1, player2);
+        StonePlacementIntent stonePlacementIntent =
+                new StonePlacementIntent(presetBoard.getLastRow(), presetBoard.getLastColumn(), new Player("xxx", player2));
+        assertThrows(PlacementViolationException.class, () -> Rules.validatePlacementIntent(presetBoard, stonePlacementIntent));
+    }
+
     @ParameterizedTest
     @EnumSource(value = PlayerColor.class, names = {"WHITE", "BLACK"})
     void whenPlayerCreatesLinearConnectedPathShouldWinTheMatch(PlayerColor playerColor) {
         Board presetBoard = new Board();
         Player player = new Player("nickname", playerColor);
-        for (int i = Board.FIRST_ROW; i <= Board.LAST_ROW; i++) {
+        for (int i = Board.FIRST_ROW; i <= presetBoard.getLastRow(); i++) {
             if (playerColor == PlayerColor.BLACK) {
                 presetBoard.placeStone(i, 5, playerColor);
             } else {
@@ -72,7 +85,7 @@ public class RulesTests {
             }
         }
         System.out.println(presetBoard.getAsString(player));
-        Assertions.assertTrue(Rules.checkWin(presetBoard, playerColor));
+        Assertions.assertTrue(presetBoard.hasWon(playerColor));
     }
 
     @ParameterizedTest
@@ -84,8 +97,8 @@ public class RulesTests {
             presetBoard.placeStone(5, i, PlayerColor.WHITE);
         }
         System.out.println(presetBoard.getAsString(player));
-        Assertions.assertFalse(Rules.checkWin(presetBoard, PlayerColor.WHITE));
-        Assertions.assertFalse(Rules.checkWin(presetBoard, PlayerColor.BLACK));
+        Assertions.assertFalse(presetBoard.hasWon(PlayerColor.WHITE));
+        Assertions.assertFalse(presetBoard.hasWon(PlayerColor.BLACK));
     }
 
     @ParameterizedTest
@@ -97,8 +110,8 @@ public class RulesTests {
             presetBoard.placeStone(i, 7, PlayerColor.BLACK);
         }
         System.out.println(presetBoard.getAsString(player));
-        Assertions.assertFalse(Rules.checkWin(presetBoard, PlayerColor.WHITE));
-        Assertions.assertFalse(Rules.checkWin(presetBoard, PlayerColor.BLACK));
+        Assertions.assertFalse(presetBoard.hasWon(PlayerColor.WHITE));
+        Assertions.assertFalse(presetBoard.hasWon(PlayerColor.BLACK));
     }
 
     @ParameterizedTest
@@ -106,27 +119,27 @@ public class RulesTests {
     void whenPlayerCreatesDiagonalConnectedPathBetweenTopAndBottomShouldWinTheMatch(PlayerColor playerColor) {
         Board presetBoard = new Board();
         Player player = new Player("nickname", PlayerColor.WHITE);
-        for (int i = Board.FIRST_ROW; i <= Board.LAST_ROW; i++) {
+        for (int i = Board.FIRST_ROW; i <= presetBoard.getLastRow(); i++) {
             presetBoard.placeStone(i, i, playerColor);
         }
 
         System.out.println(presetBoard.getAsString(player));
-        Assertions.assertTrue(Rules.checkWin(presetBoard, playerColor));
+        Assertions.assertTrue(presetBoard.hasWon(playerColor));
     }
 
     @Test
     void whenWhitePlayerCreatesVShapedConnectedPathBetweenLeftAndRightShouldWinTheMatch() {
         Board presetBoard = new Board();
         Player player = new Player("nickname", PlayerColor.WHITE);
-        for (int i = Board.FIRST_ROW; i <= Board.LAST_ROW / 2; i++) {
+        for (int i = Board.FIRST_ROW; i <= presetBoard.getLastRow() / 2; i++) {
             presetBoard.placeStone(i, i, PlayerColor.WHITE);
         }
         for (int i = 9; i <= 19; i++) {
-            presetBoard.placeStone(9, i, PlayerColor.WHITE);
+            placeStoneIfEmpty(presetBoard, 9, i, PlayerColor.WHITE);
         }
         presetBoard.placeStone(10, 10, PlayerColor.WHITE);
         System.out.println(presetBoard.getAsString(player));
-        Assertions.assertTrue(Rules.checkWin(presetBoard, PlayerColor.WHITE));
+        Assertions.assertTrue(presetBoard.hasWon(PlayerColor.WHITE));
     }
 
     @Test
@@ -138,24 +151,88 @@ public class RulesTests {
             presetBoard.placeStone(3, i, PlayerColor.WHITE);
         }
         // from 1,3 to 19,3
-        for (int i = Board.FIRST_ROW; i <= Board.LAST_ROW; i++) {
-            presetBoard.placeStone(i, 3, PlayerColor.WHITE);
+        for (int i = Board.FIRST_ROW; i <= presetBoard.getLastRow(); i++) {
+            placeStoneIfEmpty(presetBoard, i, 3, PlayerColor.WHITE);
         }
         // from 4,2 to 4,4
         for (int i = 2; i <= 4; i++) {
-            presetBoard.placeStone(4, i, PlayerColor.WHITE);
+            placeStoneIfEmpty(presetBoard, 4, i, PlayerColor.WHITE);
         }
         // from 5,5 to 5,18
-        for (int i = 5; i <= Board.LAST_COLUMN - 1; i++) {
+        for (int i = 5; i <= presetBoard.getLastColumn() - 1; i++) {
             presetBoard.placeStone(5, i, PlayerColor.WHITE);
         }
         // from 5,18 to 3,18
         for (int i = 5; i >= 3; i--) {
-            presetBoard.placeStone(i, 18, PlayerColor.WHITE);
+            placeStoneIfEmpty(presetBoard, i, 18, PlayerColor.WHITE);
         }
         presetBoard.placeStone(2, 19, PlayerColor.WHITE);
         System.out.println(presetBoard.getAsString(player));
-        Assertions.assertTrue(Rules.checkWin(presetBoard, PlayerColor.WHITE));
+        Assertions.assertTrue(presetBoard.hasWon(PlayerColor.WHITE));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = PlayerColor.class, names = {"WHITE", "BLACK"})
+    void whenPlayerJoinsTwoEdgeConnectedGroupsShouldWinTheMatch(PlayerColor playerColor) {
+        Board presetBoard = new Board();
+        for (int i = Board.FIRST_ROW; i <= presetBoard.getLastRow(); i++) {
+            if (i == 10) {
+                continue;
+            }
+            if (playerColor == PlayerColor.BLACK) {
+                presetBoard.placeStone(i, 5, playerColor);
+            } else {
+                presetBoard.placeStone(5, i, playerColor);
+            }
+        }
+        Assertions.assertFalse(presetBoard.hasWon(playerColor));
+        if (playerColor == PlayerColor.BLACK) {
+            presetBoard.placeStone(10, 6, playerColor);
+        } else {
+            presetBoard.placeStone(6, 10, playerColor);
+        }
+        Assertions.assertTrue(presetBoard.hasWon(playerColor));
+        Assertions.assertFalse(presetBoard.hasWon(playerColor.getOpposite()));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = PlayerColor.class, names = {"WHITE", "BLACK"})
+    void whenOnlyOneOfManyEdgeStonesReachesTheOppositeEdgeShouldFindTheConnectingPath(PlayerColor playerColor) {
+        Board presetBoard = new Board();
+        for (int i = Board.FIRST_ROW; i <= presetBoard.getLastRow(); i += 2) {
+            if (playerColor == PlayerColor.BLACK) {
+                presetBoard.placeStone(Board.FIRST_ROW, i, playerColor);
+                presetBoard.placeStone(presetBoard.getLastRow(), i, playerColor);
+            } else {
+                presetBoard.placeStone(i, Board.FIRST_COLUMN, playerColor);
+                presetBoard.placeStone(i, presetBoard.getLastColumn(), playerColor);
+            }
+        }
+        Assertions.assertFalse(presetBoard.hasConnectingPath(playerColor));
+        for (int i = Board.FIRST_ROW; i <= presetBoard.getLastRow(); i++) {
+            if (playerColor == PlayerColor.BLACK) {
+                placeStoneIfEmpty(presetBoard, i, 17, playerColor);
+            } else {
+                placeStoneIfEmpty(presetBoard, 17, i, playerColor);
+            }
+        }
+        Assertions.assertTrue(presetBoard.hasConnectingPath(playerColor));
+        Assertions.assertEquals(presetBoard.hasWon(playerColor), presetBoard.hasConnectingPath(playerColor));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"9,BLACK", "9,WHITE", "101,BLACK", "101,WHITE"})
+    void givenBoardOfGivenSizeWhenPlayerCreatesLinearConnectedPathShouldWinTheMatch(int size, PlayerColor playerColor) {
+        Board presetBoard = new Board(size, size);
+        for (int i = Board.FIRST_ROW; i <= size; i++) {
+            Assertions.assertFalse(presetBoard.hasWon(playerColor));
+            if (playerColor == PlayerColor.BLACK) {
+                presetBoard.placeStone(i, size / 2, playerColor);
+            } else {
+                presetBoard.placeStone(size / 2, i, playerColor);
+            }
+        }
+        Assertions.assertTrue(presetBoard.hasWon(playerColor));
     }
 
     @ParameterizedTest
@@ -179,10 +256,8 @@ public class RulesTests {
 
     @Test
     void whenPlayerHasNoMoreValidPlacementsShouldReturnFalse() {
-        Board board = new Board();
+        Board board = new Board(2, 2);
         Player player = new Player("nickname", PlayerColor.BLACK);
-        Board.LAST_COLUMN = 2;
-        Board.LAST_ROW = 2;
 
         board.placeStone(2, 1, PlayerColor.BLACK);
         board.placeStone(1, 1, PlayerColor.WHITE);
@@ -190,7 +265,50 @@ public class RulesTests {
 
 
         assertFalse(Rules.areThereEmptyAndValidIntersections(player, board));
-        Board.resetBoard();
+    }
+
+    @Test
+    void whenSamePositionIsReachedInDifferentOrderShouldHaveSamePositionKey() {
+        Board board = new Board();
+        Board transposedBoard = new Board();
+
+        board.placeStone(3, 3, PlayerColor.BLACK);
+        board.placeStone(5, 5, PlayerColor.WHITE);
+        board.placeStone(7, 7, PlayerColor.BLACK);
+        transposedBoard.placeStone(7, 7, PlayerColor.BLACK);
+        transposedBoard.placeStone(5, 5, PlayerColor.WHITE);
+        transposedBoard.placeStone(3, 3, PlayerColor.BLACK);
+        assertEquals(board.getPositionKey(), transposedBoard.getPositionKey());
+
+        Rules.applyPieRule(new Player("whiteP", PlayerColor.WHITE), new Turn(2, PlayerColor.WHITE), board);
+        assertNotEquals(board.getPositionKey(), transposedBoard.getPositionKey());
+        Rules.isPieRuleAccepted = false;
+    }
+
+    @Test
+    void whenWinningPlacementIsUndoneShouldRestorePreviousPosition() {
+        Board board = new Board(3, 3);
+        board.placeStone(1, 2, PlayerColor.BLACK);
+        board.placeStone(2, 2, PlayerColor.BLACK);
+        long positionKey = board.getPositionKey();
+        int legalPlacementCount = board.getLegalPlacementCount(PlayerColor.WHITE);
+
+        board.placeStone(3, 2, PlayerColor.BLACK);
+        assertTrue(board.hasWon(PlayerColor.BLACK));
+
+        assertTrue(board.undoPlacement());
+        assertFalse(board.hasWon(PlayerColor.BLACK));
+        assertFalse(board.isIntersectionOccupied(3, 2));
+        assertEquals(positionKey, board.getPositionKey());
+        assertEquals(legalPlacementCount, board.getLegalPlacementCount(PlayerColor.WHITE));
+        assertEquals(2, board.getPlacementCount());
+    }
+
+    // paths that cross each other share their crossing intersections, which can only be placed once
+    private static void placeStoneIfEmpty(Board board, int row, int column, PlayerColor playerColor) {
+        if (!board.isIntersectionOccupied(row, column)) {
+            board.placeStone(row, column, playerColor);
+        }
     }
 
 }
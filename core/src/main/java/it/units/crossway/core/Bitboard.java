@@ -0,0 +1,62 @@
+package it.units.crossway.core;
+
+import java.util.Arrays;
+
+public final class Bitboard {
+
+    private static final int ADDRESS_BITS_PER_WORD = 6;
+    private final long[] words;
+
+    public Bitboard(int size) {
+        this.words = new long[(size + Long.SIZE - 1) >>> ADDRESS_BITS_PER_WORD];
+    }
+
+    public boolean get(int index) {
+        return (words[index >>> ADDRESS_BITS_PER_WORD] & (1L << index)) != 0;
+    }
+
+    public void set(int index) {
+        words[index >>> ADDRESS_BITS_PER_WORD] |= 1L << index;
+    }
+
+    public void clear(int index) {
+        words[index >>> ADDRESS_BITS_PER_WORD] &= ~(1L << index);
+    }
+
+    public void clear() {
+        Arrays.fill(words, 0L);
+    }
+
+    public int cardinality(int fromIndex, int toIndex) {
+        if (fromIndex >= toIndex) {
+            return 0;
+        }
+        int firstWord = fromIndex >>> ADDRESS_BITS_PER_WORD;
+        int lastWord = (toIndex - 1) >>> ADDRESS_BITS_PER_WORD;
+        long firstMask = -1L << fromIndex;
+        long lastMask = -1L >>> -toIndex;
+        if (firstWord == lastWord) {
+            return Long.bitCount(words[firstWord] & firstMask & lastMask);
+        }
+        int count = Long.bitCount(words[firstWord] & firstMask);
+        for (int i = firstWord + 1; i < lastWord; i++) {
+            count += Long.bitCount(words[i]);
+        }
+        return count + Long.bitCount(words[lastWord] & lastMask);
+    }
+
+    public int nextSetBit(int fromIndex) {
+        int wordIndex = fromIndex >>> ADDRESS_BITS_PER_WORD;
+        if (wordIndex >= words.length) {
+            return -1;
+        }
+        long word = words[wordIndex] & (-1L << fromIndex);
+        while (word == 0) {
+            if (++wordIndex == words.length) {
+                return -1;
+            }
+            word = words[wordIndex];
+        }
+        return (wordIndex << ADDRESS_BITS_PER_WORD) + Long.numberOfTrailingZeros(word);
+    }
+}
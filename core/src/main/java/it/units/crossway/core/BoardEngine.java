@@ -0,0 +1,402 @@
+package it.units.crossway.core;
+
+public final class BoardEngine {
+
+    public static final int FIRST_ROW = 1;
+    public static final int FIRST_COLUMN = 1;
+    public static final int DEFAULT_SIZE = 19;
+    private static final int PLACEMENT_FRAME = 5;
+    private final int lastRow;
+    private final int lastColumn;
+    private final int width;
+    private final int height;
+    private final int firstEdge;
+    private final int secondEdge;
+    private final Bitboard whiteStones;
+    private final Bitboard blackStones;
+    private final DisjointSet whiteConnections;
+    private final DisjointSet blackConnections;
+    private final int[] slotOffsets;
+    private final char[] neighbourhoods;
+    private final NeighbourTable neighbourTable;
+    private final WinSearch winSearch;
+    private final Bitboard intersections;
+    private final Bitboard whiteLegalPlacements;
+    private final Bitboard blackLegalPlacements;
+    private int whiteLegalPlacementCount;
+    private int blackLegalPlacementCount;
+    private final Zobrist zobrist;
+    private long positionKey;
+    private int sideToMove = Stone.BLACK;
+    private boolean pieRuleApplied;
+    private final int[] placements;
+    private final long[] previousPositionKeys;
+    private int placementCount;
+
+    public BoardEngine() {
+        this(DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+
+    public BoardEngine(int lastRow, int lastColumn) {
+        if (lastRow < FIRST_ROW || lastColumn < FIRST_COLUMN) {
+            throw new IllegalArgumentException("Board must have at least one row and one column");
+        }
+        this.lastRow = lastRow;
+        this.lastColumn = lastColumn;
+        this.width = lastColumn + 2;
+        this.height = lastRow + 2;
+        this.firstEdge = width * height;
+        this.secondEdge = firstEdge + 1;
+        this.whiteStones = new Bitboard(width * height);
+        this.blackStones = new Bitboard(width * height);
+        this.whiteConnections = new DisjointSet(width * height + 2);
+        this.blackConnections = new DisjointSet(width * height + 2);
+        this.slotOffsets = new int[]{-width - 1, -width, -width + 1, -1, 1, width - 1, width, width + 1};
+        this.neighbourhoods = new char[width * height];
+        this.neighbourTable = NeighbourTable.of(lastRow, lastColumn);
+        this.winSearch = new WinSearch(lastRow, lastColumn);
+        this.zobrist = Zobrist.of(lastRow, lastColumn);
+        this.placements = new int[PLACEMENT_FRAME * width * height];
+        this.previousPositionKeys = new long[width * height];
+        this.intersections = new Bitboard(width * height);
+        this.whiteLegalPlacements = new Bitboard(width * height);
+        this.blackLegalPlacements = new Bitboard(width * height);
+        for (int row = FIRST_ROW; row <= lastRow; row++) {
+            for (int column = FIRST_COLUMN; column <= lastColumn; column++) {
+                intersections.set(indexOf(row, column));
+                whiteLegalPlacements.set(indexOf(row, column));
+                blackLegalPlacements.set(indexOf(row, column));
+            }
+        }
+        this.whiteLegalPlacementCount = lastRow * lastColumn;
+        this.blackLegalPlacementCount = lastRow * lastColumn;
+    }
+
+    public int getLastRow() {
+        return lastRow;
+    }
+
+    public int getLastColumn() {
+        return lastColumn;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getStoneAt(int row, int column) {
+        if (!isIntersectionStored(row, column)) {
+            return Stone.EMPTY;
+        }
+        int index = indexOf(row, column);
+        if (whiteStones.get(index)) {
+            return Stone.WHITE;
+        }
+        if (blackStones.get(index)) {
+            return Stone.BLACK;
+        }
+        return Stone.EMPTY;
+    }
+
+    public PlacementViolation validatePlacement(int row, int column, int stone) {
+        if (isIntersectionOccupied(row, column)) {
+            return PlacementViolation.OCCUPIED;
+        }
+        if (isPlacementOutOfBoardBoundaries(row, column)) {
+            return PlacementViolation.OUT_OF_BOARD;
+        }
+        if (isDiagonalViolation(row, column, stone)) {
+            return PlacementViolation.DIAGONAL;
+        }
+        return PlacementViolation.NONE;
+    }
+
+    // the padding around the board must stay empty, the neighbourhood patterns rely on it
+    public void placeStone(int row, int column, int stone) {
+        if (!Stone.isColor(stone)) {
+            throw new IllegalArgumentException("Not a stone color: " + stone);
+        }
+        if (!isIntersectionInBoard(row, column)) {
+            throw new IllegalArgumentException("Intersection (" + row + ", " + column + ") is out of the board");
+        }
+        if (isIntersectionOccupied(row, column)) {
+            throw new IllegalArgumentException("Intersection (" + row + ", " + column + ") is already occupied");
+        }
+        int index = indexOf(row, column);
+        pushPlacement(index, stone);
+        stonesOf(stone).set(index);
+        positionKey ^= zobrist.keyOf(index, stone);
+        setSideToMove(Stone.opposite(stone));
+        updateNeighbourhoods(index, stone);
+        updateLegalPlacements(index);
+        connectStone(row, column, index, stone);
+    }
+
+    // each frame holds the index, the stone, the side to move, the union-find mark and the pie rule flag before
+    // the placement, so undoing a placement also undoes a pie rule applied after it
+    private void pushPlacement(int index, int stone) {
+        int frame = placementCount * PLACEMENT_FRAME;
+        placements[frame] = index;
+        placements[frame + 1] = stone;
+        placements[frame + 2] = sideToMove;
+        placements[frame + 3] = connectionsOf(stone).mark();
+        placements[frame + 4] = pieRuleApplied ? 1 : 0;
+        previousPositionKeys[placementCount++] = positionKey;
+    }
+
+    public boolean undoPlacement() {
+        if (placementCount == 0) {
+            return false;
+        }
+        int frame = --placementCount * PLACEMENT_FRAME;
+        int index = placements[frame];
+        int stone = placements[frame + 1];
+        stonesOf(stone).clear(index);
+        connectionsOf(stone).rollback(placements[frame + 3]);
+        sideToMove = placements[frame + 2];
+        pieRuleApplied = placements[frame + 4] == 1;
+        positionKey = previousPositionKeys[placementCount];
+        clearNeighbourhoods(index, stone);
+        updateLegalPlacements(index);
+        return true;
+    }
+
+    public int getPlacementCount() {
+        return placementCount;
+    }
+
+    public long getPositionKey() {
+        return positionKey;
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public void setSideToMove(int stone) {
+        if (!Stone.isColor(stone) || stone == sideToMove) {
+            return;
+        }
+        sideToMove = stone;
+        positionKey ^= Zobrist.WHITE_TO_MOVE_KEY;
+    }
+
+    public boolean isPieRuleApplied() {
+        return pieRuleApplied;
+    }
+
+    public void applyPieRule() {
+        if (pieRuleApplied) {
+            return;
+        }
+        pieRuleApplied = true;
+        positionKey ^= Zobrist.PIE_RULE_KEY;
+        setSideToMove(Stone.WHITE);
+    }
+
+    public boolean isDiagonalViolation(int row, int column, int stone) {
+        if (!isIntersectionStored(row, column)) {
+            return false;
+        }
+        return DiagonalViolationTable.isViolation(neighbourhoods[indexOf(row, column)], stone);
+    }
+
+    private void updateNeighbourhoods(int index, int stone) {
+        for (int slot = 0; slot < DiagonalViolationTable.NEIGHBOURHOOD_SLOTS; slot++) {
+            int centerIndex = index - slotOffsets[slot];
+            if (centerIndex >= 0 && centerIndex < neighbourhoods.length) {
+                neighbourhoods[centerIndex] |= DiagonalViolationTable.codeOf(stone, slot);
+            }
+        }
+    }
+
+    private void clearNeighbourhoods(int index, int stone) {
+        for (int slot = 0; slot < DiagonalViolationTable.NEIGHBOURHOOD_SLOTS; slot++) {
+            int centerIndex = index - slotOffsets[slot];
+            if (centerIndex >= 0 && centerIndex < neighbourhoods.length) {
+                neighbourhoods[centerIndex] &= ~DiagonalViolationTable.codeOf(stone, slot);
+            }
+        }
+    }
+
+    public boolean hasLegalPlacement(int stone) {
+        return getLegalPlacementCount(stone) > 0;
+    }
+
+    public int getLegalPlacementCount(int stone) {
+        switch (stone) {
+            case Stone.WHITE:
+                return whiteLegalPlacementCount;
+            case Stone.BLACK:
+                return blackLegalPlacementCount;
+            default:
+                return 0;
+        }
+    }
+
+    public boolean isLegalPlacement(int row, int column, int stone) {
+        return Stone.isColor(stone) && isIntersectionStored(row, column) &&
+                legalPlacementsOf(stone).get(indexOf(row, column));
+    }
+
+    // iterates legal placements as intersection indexes: for (i = next(s, 0); i >= 0; i = next(s, i + 1))
+    public int nextLegalPlacement(int stone, int fromIndex) {
+        if (!Stone.isColor(stone)) {
+            return -1;
+        }
+        return legalPlacementsOf(stone).nextSetBit(fromIndex);
+    }
+
+    public int getRowOfIndex(int index) {
+        return index / width;
+    }
+
+    public int getColumnOfIndex(int index) {
+        return index % width;
+    }
+
+    private void updateLegalPlacements(int index) {
+        refreshLegalPlacement(index);
+        for (int slot = 0; slot < DiagonalViolationTable.NEIGHBOURHOOD_SLOTS; slot++) {
+            int centerIndex = index - slotOffsets[slot];
+            if (centerIndex >= 0 && centerIndex < neighbourhoods.length) {
+                refreshLegalPlacement(centerIndex);
+            }
+        }
+    }
+
+    private void refreshLegalPlacement(int index) {
+        boolean isEmptyIntersection = intersections.get(index) && !whiteStones.get(index) && !blackStones.get(index);
+        whiteLegalPlacementCount += setLegalPlacement(whiteLegalPlacements, index, isEmptyIntersection &&
+                !DiagonalViolationTable.isViolation(neighbourhoods[index], Stone.WHITE));
+        blackLegalPlacementCount += setLegalPlacement(blackLegalPlacements, index, isEmptyIntersection &&
+                !DiagonalViolationTable.isViolation(neighbourhoods[index], Stone.BLACK));
+    }
+
+    private static int setLegalPlacement(Bitboard legalPlacements, int index, boolean isLegal) {
+        if (legalPlacements.get(index) == isLegal) {
+            return 0;
+        }
+        if (isLegal) {
+            legalPlacements.set(index);
+            return 1;
+        }
+        legalPlacements.clear(index);
+        return -1;
+    }
+
+    public boolean hasWon(int stone) {
+        if (!Stone.isColor(stone)) {
+            return false;
+        }
+        return connectionsOf(stone).isConnected(firstEdge, secondEdge);
+    }
+
+    // searches the stones from scratch, unlike hasWon, so it also cross-checks the incremental connections
+    public boolean hasConnectingPath(int stone) {
+        if (!Stone.isColor(stone)) {
+            return false;
+        }
+        return stone == Stone.BLACK
+                ? winSearch.connectsFirstAndLastRow(blackStones)
+                : winSearch.connectsFirstAndLastColumn(whiteStones);
+    }
+
+    // BLACK links the north (first) and south (second) edges, WHITE the west (first) and east (second) ones
+    private void connectStone(int row, int column, int index, int stone) {
+        Bitboard stones = stonesOf(stone);
+        DisjointSet connections = connectionsOf(stone);
+        for (int position = neighbourTable.firstOf(index); position < neighbourTable.endOf(index); position++) {
+            int adjIndex = neighbourTable.neighbourAt(position);
+            if (stones.get(adjIndex)) {
+                connections.union(index, adjIndex);
+            }
+        }
+        int edgeCoordinate = stone == Stone.BLACK ? row : column;
+        int firstEdgeCoordinate = stone == Stone.BLACK ? FIRST_ROW : FIRST_COLUMN;
+        int lastEdgeCoordinate = stone == Stone.BLACK ? lastRow : lastColumn;
+        if (edgeCoordinate == firstEdgeCoordinate) {
+            connections.union(index, firstEdge);
+        }
+        if (edgeCoordinate == lastEdgeCoordinate) {
+            connections.union(index, secondEdge);
+        }
+    }
+
+    public boolean isPlacementOutOfBoardBoundaries(int row, int column) {
+        return row > lastRow || column > lastColumn || row < FIRST_ROW || column < FIRST_COLUMN;
+    }
+
+    public int getNumberOfStonesInColumn(int column, int stone) {
+        if (!Stone.isColor(stone) || column < 0 || column >= width) {
+            return 0;
+        }
+        Bitboard stones = stonesOf(stone);
+        int count = 0;
+        for (int index = column; index < width * height; index += width) {
+            if (stones.get(index)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public int getNumberOfStonesInRow(int row, int stone) {
+        if (!Stone.isColor(stone) || row < 0 || row >= height) {
+            return 0;
+        }
+        return stonesOf(stone).cardinality(indexOf(row, 0), indexOf(row + 1, 0));
+    }
+
+    // iterates stones as intersection indexes: for (i = next(s, 0); i >= 0; i = next(s, i + 1))
+    public int nextStone(int stone, int fromIndex) {
+        if (!Stone.isColor(stone)) {
+            return -1;
+        }
+        return stonesOf(stone).nextSetBit(fromIndex);
+    }
+
+    public NeighbourTable getNeighbourTable() {
+        return neighbourTable;
+    }
+
+    public int getIntersectionIndex(int row, int column) {
+        return indexOf(row, column);
+    }
+
+    public boolean isIntersectionOccupied(int row, int column) {
+        if (!isIntersectionStored(row, column)) {
+            return false;
+        }
+        int index = indexOf(row, column);
+        return whiteStones.get(index) || blackStones.get(index);
+    }
+
+    public boolean isIntersectionStored(int row, int column) {
+        return row >= 0 && row < height && column >= 0 && column < width;
+    }
+
+    private boolean isIntersectionInBoard(int row, int column) {
+        return isIntersectionStored(row, column) && intersections.get(indexOf(row, column));
+    }
+
+    private int indexOf(int row, int column) {
+        return row * width + column;
+    }
+
+    private Bitboard stonesOf(int stone) {
+        return stone == Stone.WHITE ? whiteStones : blackStones;
+    }
+
+    private Bitboard legalPlacementsOf(int stone) {
+        return stone == Stone.WHITE ? whiteLegalPlacements : blackLegalPlacements;
+    }
+
+    private DisjointSet connectionsOf(int stone) {
+        return stone == Stone.WHITE ? whiteConnections : blackConnections;
+    }
+}
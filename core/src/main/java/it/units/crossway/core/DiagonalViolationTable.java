@@ -0,0 +1,49 @@
+package it.units.crossway.core;
+
+// A neighbourhood packs the 8 intersections around a cell, 2 bits each (the Stone value of the intersection),
+// in row-major order: NW, N, NE, W, E, SW, S, SE
+public final class DiagonalViolationTable {
+
+    public static final int NEIGHBOURHOOD_SLOTS = 8;
+    private static final int BLACK_CODE = Stone.BLACK;
+    private static final int WHITE_CODE = Stone.WHITE;
+    private static final int BLACK_VIOLATION = Stone.BLACK;
+    private static final int WHITE_VIOLATION = Stone.WHITE;
+    // {diagonal, vertical, horizontal} slots of the four 2x2 squares the cell belongs to
+    private static final int[][] SQUARES = {{0, 1, 3}, {2, 1, 4}, {5, 6, 3}, {7, 6, 4}};
+    private static final byte[] VIOLATIONS = new byte[1 << (2 * NEIGHBOURHOOD_SLOTS)];
+
+    static {
+        for (int neighbourhood = 0; neighbourhood < VIOLATIONS.length; neighbourhood++) {
+            int violations = 0;
+            for (int[] square : SQUARES) {
+                int diagonal = slot(neighbourhood, square[0]);
+                int vertical = slot(neighbourhood, square[1]);
+                int horizontal = slot(neighbourhood, square[2]);
+                if (diagonal == BLACK_CODE && vertical == WHITE_CODE && horizontal == WHITE_CODE) {
+                    violations |= BLACK_VIOLATION;
+                }
+                if (diagonal == WHITE_CODE && vertical == BLACK_CODE && horizontal == BLACK_CODE) {
+                    violations |= WHITE_VIOLATION;
+                }
+            }
+            VIOLATIONS[neighbourhood] = (byte) violations;
+        }
+    }
+
+    private DiagonalViolationTable() {
+    }
+
+    // BLACK_VIOLATION and WHITE_VIOLATION line up with the Stone values, so the stone doubles as the mask
+    public static boolean isViolation(int neighbourhood, int stone) {
+        return Stone.isColor(stone) && (VIOLATIONS[neighbourhood] & stone) != 0;
+    }
+
+    public static int codeOf(int stone, int slot) {
+        return Stone.isColor(stone) ? stone << (2 * slot) : 0;
+    }
+
+    private static int slot(int neighbourhood, int slot) {
+        return (neighbourhood >>> (2 * slot)) & 3;
+    }
+}
@@ -0,0 +1,59 @@
+package it.units.crossway.core;
+
+public final class DisjointSet {
+
+    private final int[] parents;
+    private final int[] sizes;
+    private final int[] history;
+    private int historySize;
+
+    public DisjointSet(int size) {
+        this.parents = new int[size];
+        this.sizes = new int[size];
+        this.history = new int[size];
+        for (int element = 0; element < size; element++) {
+            parents[element] = element;
+            sizes[element] = 1;
+        }
+    }
+
+    // no path compression, so that every union can be rolled back; union by size keeps trees logarithmic
+    public int find(int element) {
+        while (parents[element] != element) {
+            element = parents[element];
+        }
+        return element;
+    }
+
+    public void union(int first, int second) {
+        int firstRoot = find(first);
+        int secondRoot = find(second);
+        if (firstRoot == secondRoot) {
+            return;
+        }
+        if (sizes[firstRoot] < sizes[secondRoot]) {
+            int swap = firstRoot;
+            firstRoot = secondRoot;
+            secondRoot = swap;
+        }
+        parents[secondRoot] = firstRoot;
+        sizes[firstRoot] += sizes[secondRoot];
+        history[historySize++] = secondRoot;
+    }
+
+    public boolean isConnected(int first, int second) {
+        return find(first) == find(second);
+    }
+
+    public int mark() {
+        return historySize;
+    }
+
+    public void rollback(int mark) {
+        while (historySize > mark) {
+            int root = history[--historySize];
+            sizes[parents[root]] -= sizes[root];
+            parents[root] = root;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package it.units.crossway.core;
+
+import java.util.Objects;
+
+public class GameEvent {
+
+    public enum Kind {
+        PLACEMENT,
+        JOIN,
+        PIE_RULE,
+        WIN
+    }
+
+    private Kind kind;
+    private long sequence;
+    private String nickname;
+    private int row;
+    private int column;
+
+    public GameEvent() {
+    }
+
+    public GameEvent(Kind kind, long sequence, String nickname, int row, int column) {
+        this.kind = kind;
+        this.sequence = sequence;
+        this.nickname = nickname;
+        this.row = row;
+        this.column = column;
+    }
+
+    public static GameEvent placement(long sequence, String nickname, int row, int column) {
+        return new GameEvent(Kind.PLACEMENT, sequence, nickname, row, column);
+    }
+
+    public static GameEvent of(Kind kind, long sequence, String nickname) {
+        return new GameEvent(kind, sequence, nickname, 0, 0);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public void setKind(Kind kind) {
+        this.kind = kind;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
+    public String getNickname() {
+        return nickname;
+    }
+
+    public void setNickname(String nickname) {
+        this.nickname = nickname;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public void setRow(int row) {
+        this.row = row;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public void setColumn(int column) {
+        this.column = column;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GameEvent)) {
+            return false;
+        }
+        GameEvent other = (GameEvent) o;
+        return kind == other.kind && sequence == other.sequence && row == other.row && column == other.column &&
+                Objects.equals(nickname, other.nickname);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, sequence, nickname, row, column);
+    }
+
+    @Override
+    public String toString() {
+        return "GameEvent(kind=" + kind + ", sequence=" + sequence + ", nickname=" + nickname +
+                ", row=" + row + ", column=" + column + ")";
+    }
+}
@@ -0,0 +1,152 @@
+package it.units.crossway.core;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Binary form of a game event: one byte of kind, the sequence as a varint, the packed cell of a placement
+// as a varint and the nickname as a length-prefixed UTF-8 string. A placement fits in a handful of bytes.
+// An envelope is one byte of version and the count of its events as a varint, followed by the events.
+public final class GameEventCodec {
+
+    public static final String MIME_TYPE = "application/x-crossway-event";
+    private static final int COLUMN_BITS = 7;
+    public static final int MAX_COORDINATE = (1 << COLUMN_BITS) - 1;
+    private static final int MAX_VARINT_BYTES = 10;
+    private static final GameEvent.Kind[] KINDS = GameEvent.Kind.values();
+
+    private GameEventCodec() {
+    }
+
+    public static byte[] encode(GameEvent event) {
+        byte[] nickname = nicknameOf(event);
+        ByteBuffer buffer = ByteBuffer.allocate(maxEncodedSize(nickname));
+        putEvent(buffer, event, nickname);
+        return toBytes(buffer);
+    }
+
+    public static byte[] encode(GameEventEnvelope envelope) {
+        List<byte[]> nicknames = new ArrayList<>(envelope.getEvents().size());
+        int size = 1 + MAX_VARINT_BYTES;
+        for (GameEvent event : envelope.getEvents()) {
+            byte[] nickname = nicknameOf(event);
+            nicknames.add(nickname);
+            size += maxEncodedSize(nickname);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.put((byte) envelope.getVersion());
+        putVarint(buffer, envelope.getEvents().size());
+        for (int i = 0; i < envelope.getEvents().size(); i++) {
+            putEvent(buffer, envelope.getEvents().get(i), nicknames.get(i));
+        }
+        return toBytes(buffer);
+    }
+
+    public static GameEvent decode(byte[] bytes) {
+        try {
+            return getEvent(ByteBuffer.wrap(bytes));
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated game event", e);
+        }
+    }
+
+    public static GameEventEnvelope decodeEnvelope(byte[] bytes) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            int version = buffer.get();
+            if (version != GameEventEnvelope.VERSION) {
+                throw new IllegalArgumentException("Unsupported game event envelope version " + version);
+            }
+            long count = getVarint(buffer);
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IllegalArgumentException("Truncated game event envelope");
+            }
+            List<GameEvent> events = new ArrayList<>((int) count);
+            for (long i = 0; i < count; i++) {
+                events.add(getEvent(buffer));
+            }
+            return new GameEventEnvelope(version, events);
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated game event envelope", e);
+        }
+    }
+
+    private static byte[] nicknameOf(GameEvent event) {
+        return event.getNickname() == null ? new byte[0] : event.getNickname().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static int maxEncodedSize(byte[] nickname) {
+        return 1 + 3 * MAX_VARINT_BYTES + nickname.length;
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.position()];
+        buffer.flip().get(bytes);
+        return bytes;
+    }
+
+    private static void putEvent(ByteBuffer buffer, GameEvent event, byte[] nickname) {
+        buffer.put((byte) event.getKind().ordinal());
+        putVarint(buffer, event.getSequence());
+        if (event.getKind() == GameEvent.Kind.PLACEMENT) {
+            putVarint(buffer, packCell(event.getRow(), event.getColumn()));
+        }
+        putVarint(buffer, nickname.length);
+        buffer.put(nickname);
+    }
+
+    private static GameEvent getEvent(ByteBuffer buffer) {
+        int kind = buffer.get();
+        if (kind < 0 || kind >= KINDS.length) {
+            throw new IllegalArgumentException("Unknown game event kind " + kind);
+        }
+        GameEvent event = new GameEvent();
+        event.setKind(KINDS[kind]);
+        event.setSequence(getVarint(buffer));
+        if (event.getKind() == GameEvent.Kind.PLACEMENT) {
+            int cell = (int) getVarint(buffer);
+            event.setRow(cell >>> COLUMN_BITS);
+            event.setColumn(cell & MAX_COORDINATE);
+        }
+        long length = getVarint(buffer);
+        // checked before allocating, so a forged length cannot ask for more than the bytes actually received
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("Invalid game event nickname length " + length);
+        }
+        if (length > 0) {
+            byte[] nickname = new byte[(int) length];
+            buffer.get(nickname);
+            event.setNickname(new String(nickname, StandardCharsets.UTF_8));
+        }
+        return event;
+    }
+
+    private static int packCell(int row, int column) {
+        if (row < 0 || row > MAX_COORDINATE || column < 0 || column > MAX_COORDINATE) {
+            throw new IllegalArgumentException("The cell (" + row + ", " + column + ") cannot be packed");
+        }
+        return row << COLUMN_BITS | column;
+    }
+
+    private static void putVarint(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long getVarint(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; shift < 7 * MAX_VARINT_BYTES; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Malformed varint");
+    }
+}
@@ -0,0 +1,65 @@
+package it.units.crossway.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+// One frame of game events: events published together, like a winning placement and the win, share a frame
+public class GameEventEnvelope {
+
+    public static final int VERSION = 1;
+
+    private int version = VERSION;
+    private List<GameEvent> events = new ArrayList<>();
+
+    public GameEventEnvelope() {
+    }
+
+    public GameEventEnvelope(int version, List<GameEvent> events) {
+        this.version = version;
+        this.events = events;
+    }
+
+    public static GameEventEnvelope of(GameEvent... events) {
+        return new GameEventEnvelope(VERSION, new ArrayList<>(Arrays.asList(events)));
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
+    public List<GameEvent> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<GameEvent> events) {
+        this.events = events;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof GameEventEnvelope)) {
+            return false;
+        }
+        GameEventEnvelope other = (GameEventEnvelope) o;
+        return version == other.version && Objects.equals(events, other.events);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(version, events);
+    }
+
+    @Override
+    public String toString() {
+        return "GameEventEnvelope(version=" + version + ", events=" + events + ")";
+    }
+}
@@ -0,0 +1,61 @@
+package it.units.crossway.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class NeighbourTable {
+
+    private static final Map<Long, NeighbourTable> TABLES = new ConcurrentHashMap<>();
+    private final int[] offsets;
+    private final int[] neighbours;
+
+    private NeighbourTable(int lastRow, int lastColumn) {
+        int width = lastColumn + 2;
+        int size = width * (lastRow + 2);
+        this.offsets = new int[size + 1];
+        this.neighbours = new int[8 * lastRow * lastColumn];
+        int count = 0;
+        for (int index = 0; index < size; index++) {
+            offsets[index] = count;
+            int row = index / width;
+            int column = index % width;
+            if (!isInBoard(row, column, lastRow, lastColumn)) {
+                continue;
+            }
+            for (int rowOffset = -1; rowOffset <= 1; rowOffset++) {
+                for (int columnOffset = -1; columnOffset <= 1; columnOffset++) {
+                    if ((rowOffset != 0 || columnOffset != 0) &&
+                            isInBoard(row + rowOffset, column + columnOffset, lastRow, lastColumn)) {
+                        neighbours[count++] = index + rowOffset * width + columnOffset;
+                    }
+                }
+            }
+        }
+        offsets[size] = count;
+    }
+
+    public static NeighbourTable of(int lastRow, int lastColumn) {
+        return TABLES.computeIfAbsent(((long) lastRow << 32) | lastColumn,
+                key -> new NeighbourTable(lastRow, lastColumn));
+    }
+
+    public int firstOf(int index) {
+        return offsets[index];
+    }
+
+    public int endOf(int index) {
+        return offsets[index + 1];
+    }
+
+    public int countOf(int index) {
+        return offsets[index + 1] - offsets[index];
+    }
+
+    public int neighbourAt(int position) {
+        return neighbours[position];
+    }
+
+    private static boolean isInBoard(int row, int column, int lastRow, int lastColumn) {
+        return row >= BoardEngine.FIRST_ROW && row <= lastRow && column >= BoardEngine.FIRST_COLUMN && column <= lastColumn;
+    }
+}
@@ -0,0 +1,8 @@
+package it.units.crossway.core;
+
+public enum PlacementViolation {
+    NONE,
+    OCCUPIED,
+    OUT_OF_BOARD,
+    DIAGONAL
+}
@@ -0,0 +1,19 @@
+package it.units.crossway.core;
+
+public final class Stone {
+
+    public static final int EMPTY = 0;
+    public static final int BLACK = 1;
+    public static final int WHITE = 2;
+
+    private Stone() {
+    }
+
+    public static boolean isColor(int stone) {
+        return stone == BLACK || stone == WHITE;
+    }
+
+    public static int opposite(int stone) {
+        return isColor(stone) ? BLACK + WHITE - stone : EMPTY;
+    }
+}
@@ -0,0 +1,92 @@
+package it.units.crossway.core;
+
+// Stateless win check for boards without placement history: one breadth-first pass from the smaller edge
+// towards the other one, over a reusable queue and visited bitmap, stopping at the first stone on the target edge
+public final class WinSearch {
+
+    private final int width;
+    private final int lastRow;
+    private final int lastColumn;
+    private final NeighbourTable neighbourTable;
+    private final int[] queue;
+    private final Bitboard visited;
+
+    public WinSearch(int lastRow, int lastColumn) {
+        this.width = lastColumn + 2;
+        this.lastRow = lastRow;
+        this.lastColumn = lastColumn;
+        this.neighbourTable = NeighbourTable.of(lastRow, lastColumn);
+        this.queue = new int[lastRow * lastColumn];
+        this.visited = new Bitboard(width * (lastRow + 2));
+    }
+
+    public boolean connectsFirstAndLastRow(Bitboard stones) {
+        int firstRowStart = BoardEngine.FIRST_ROW * width + BoardEngine.FIRST_COLUMN;
+        int lastRowStart = lastRow * width + BoardEngine.FIRST_COLUMN;
+        int firstRowCount = stones.cardinality(firstRowStart, firstRowStart + lastColumn);
+        int lastRowCount = stones.cardinality(lastRowStart, lastRowStart + lastColumn);
+        if (firstRowCount == 0 || lastRowCount == 0) {
+            return false;
+        }
+        return firstRowCount <= lastRowCount
+                ? search(stones, firstRowStart, 1, lastColumn, lastRow, true)
+                : search(stones, lastRowStart, 1, lastColumn, BoardEngine.FIRST_ROW, true);
+    }
+
+    public boolean connectsFirstAndLastColumn(Bitboard stones) {
+        int firstColumnStart = BoardEngine.FIRST_ROW * width + BoardEngine.FIRST_COLUMN;
+        int lastColumnStart = BoardEngine.FIRST_ROW * width + lastColumn;
+        int firstColumnCount = countColumn(stones, firstColumnStart);
+        int lastColumnCount = countColumn(stones, lastColumnStart);
+        if (firstColumnCount == 0 || lastColumnCount == 0) {
+            return false;
+        }
+        return firstColumnCount <= lastColumnCount
+                ? search(stones, firstColumnStart, width, lastRow, lastColumn, false)
+                : search(stones, lastColumnStart, width, lastRow, BoardEngine.FIRST_COLUMN, false);
+    }
+
+    private int countColumn(Bitboard stones, int columnStart) {
+        int count = 0;
+        for (int i = 0, index = columnStart; i < lastRow; i++, index += width) {
+            if (stones.get(index)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean search(Bitboard stones, int edgeStart, int edgeStep, int edgeLength, int target, boolean targetIsRow) {
+        visited.clear();
+        int head = 0;
+        int tail = 0;
+        for (int i = 0, index = edgeStart; i < edgeLength; i++, index += edgeStep) {
+            if (stones.get(index)) {
+                if (isTarget(index, target, targetIsRow)) {
+                    return true;
+                }
+                visited.set(index);
+                queue[tail++] = index;
+            }
+        }
+        while (head < tail) {
+            int index = queue[head++];
+            for (int position = neighbourTable.firstOf(index); position < neighbourTable.endOf(index); position++) {
+                int adjIndex = neighbourTable.neighbourAt(position);
+                if (visited.get(adjIndex) || !stones.get(adjIndex)) {
+                    continue;
+                }
+                if (isTarget(adjIndex, target, targetIsRow)) {
+                    return true;
+                }
+                visited.set(adjIndex);
+                queue[tail++] = adjIndex;
+            }
+        }
+        return false;
+    }
+
+    private boolean isTarget(int index, int target, boolean targetIsRow) {
+        return targetIsRow ? index / width == target : index % width == target;
+    }
+}
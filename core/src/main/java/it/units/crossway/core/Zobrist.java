@@ -0,0 +1,48 @@
+package it.units.crossway.core;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+public final class Zobrist {
+
+    public static final long WHITE_TO_MOVE_KEY = mix(-1L);
+    public static final long PIE_RULE_KEY = mix(-2L);
+    private static final Map<Long, Zobrist> TABLES = new ConcurrentHashMap<>();
+    private final long[] whiteKeys;
+    private final long[] blackKeys;
+
+    // keys are derived from a fixed seed so that every client hashes the same position to the same key
+    private Zobrist(int lastRow, int lastColumn) {
+        int size = (lastColumn + 2) * (lastRow + 2);
+        long seed = ((long) lastRow << 32) | lastColumn;
+        this.whiteKeys = new long[size];
+        this.blackKeys = new long[size];
+        for (int index = 0; index < size; index++) {
+            whiteKeys[index] = mix(seed * 31 + 2L * index);
+            blackKeys[index] = mix(seed * 31 + 2L * index + 1);
+        }
+    }
+
+    public static Zobrist of(int lastRow, int lastColumn) {
+        return TABLES.computeIfAbsent(((long) lastRow << 32) | lastColumn,
+                key -> new Zobrist(lastRow, lastColumn));
+    }
+
+    public long keyOf(int index, int stone) {
+        switch (stone) {
+            case Stone.WHITE:
+                return whiteKeys[index];
+            case Stone.BLACK:
+                return blackKeys[index];
+            default:
+                return 0L;
+        }
+    }
+
+    private static long mix(long value) {
+        long z = value + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,122 @@
+package it.units.crossway.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoardEngineTests {
+
+    @Test
+    void whenBlackConnectsFirstAndLastRowShouldWin() {
+        BoardEngine engine = new BoardEngine(9, 9);
+        for (int row = BoardEngine.FIRST_ROW; row <= engine.getLastRow(); row++) {
+            assertFalse(engine.hasWon(Stone.BLACK));
+            engine.placeStone(row, 5, Stone.BLACK);
+        }
+        assertTrue(engine.hasWon(Stone.BLACK));
+        assertTrue(engine.hasConnectingPath(Stone.BLACK));
+        assertFalse(engine.hasWon(Stone.WHITE));
+    }
+
+    @Test
+    void whenWhiteConnectsThroughCrookedPathShouldFindIt() {
+        BoardEngine engine = new BoardEngine(5, 5);
+        int[][] path = {{1, 1}, {1, 2}, {2, 2}, {3, 2}, {3, 3}, {2, 4}, {2, 5}};
+        for (int[] intersection : path) {
+            assertFalse(engine.hasConnectingPath(Stone.WHITE));
+            engine.placeStone(intersection[0], intersection[1], Stone.WHITE);
+        }
+        assertTrue(engine.hasConnectingPath(Stone.WHITE));
+        assertTrue(engine.hasWon(Stone.WHITE));
+        assertFalse(engine.hasConnectingPath(Stone.BLACK));
+    }
+
+    @Test
+    void whenRandomGamesArePlayedWinSearchShouldAgreeWithIncrementalConnections() {
+        Random random = new Random(42);
+        for (int game = 0; game < 200; game++) {
+            BoardEngine engine = new BoardEngine(7, 7);
+            int stone = Stone.BLACK;
+            while (!engine.hasWon(Stone.BLACK) && !engine.hasWon(Stone.WHITE) && engine.hasLegalPlacement(stone)) {
+                int index = randomLegalPlacement(engine, stone, random);
+                engine.placeStone(engine.getRowOfIndex(index), engine.getColumnOfIndex(index), stone);
+                assertEquals(engine.hasWon(Stone.BLACK), engine.hasConnectingPath(Stone.BLACK));
+                assertEquals(engine.hasWon(Stone.WHITE), engine.hasConnectingPath(Stone.WHITE));
+                stone = Stone.opposite(stone);
+            }
+        }
+    }
+
+    @Test
+    void whenPlacementCompletesDiagonalPatternShouldReportDiagonalViolation() {
+        BoardEngine engine = new BoardEngine();
+        engine.placeStone(5, 5, Stone.BLACK);
+        engine.placeStone(5, 6, Stone.WHITE);
+        engine.placeStone(6, 5, Stone.WHITE);
+        assertEquals(PlacementViolation.DIAGONAL, engine.validatePlacement(6, 6, Stone.BLACK));
+        assertEquals(PlacementViolation.NONE, engine.validatePlacement(6, 6, Stone.WHITE));
+        assertEquals(PlacementViolation.OCCUPIED, engine.validatePlacement(5, 5, Stone.WHITE));
+        assertEquals(PlacementViolation.OUT_OF_BOARD, engine.validatePlacement(0, 5, Stone.WHITE));
+        assertFalse(engine.isLegalPlacement(6, 6, Stone.BLACK));
+    }
+
+    @Test
+    void whenStoneIsPlacedOutOfBoardOrOnOccupiedIntersectionShouldThrow() {
+        BoardEngine engine = new BoardEngine(9, 9);
+        engine.placeStone(1, 1, Stone.BLACK);
+        long positionKey = engine.getPositionKey();
+        assertThrows(IllegalArgumentException.class, () -> engine.placeStone(0, 1, Stone.WHITE));
+        assertThrows(IllegalArgumentException.class, () -> engine.placeStone(1, engine.getLastColumn() + 1, Stone.WHITE));
+        assertThrows(IllegalArgumentException.class, () -> engine.placeStone(1, 1, Stone.WHITE));
+        assertThrows(IllegalArgumentException.class, () -> engine.placeStone(2, 2, Stone.EMPTY));
+        assertEquals(positionKey, engine.getPositionKey());
+        assertEquals(1, engine.getPlacementCount());
+        assertEquals(Stone.EMPTY, engine.getStoneAt(0, 1));
+    }
+
+    @Test
+    void whenPlacementFollowedByPieRuleIsUndoneShouldRestoreKeyAndAllowPieRuleAgain() {
+        BoardEngine engine = new BoardEngine(9, 9);
+        long emptyPositionKey = engine.getPositionKey();
+        engine.placeStone(5, 5, Stone.BLACK);
+        engine.applyPieRule();
+        long pieRulePositionKey = engine.getPositionKey();
+        assertTrue(engine.undoPlacement());
+        assertFalse(engine.isPieRuleApplied());
+        assertEquals(emptyPositionKey, engine.getPositionKey());
+        assertEquals(Stone.BLACK, engine.getSideToMove());
+        engine.placeStone(5, 5, Stone.BLACK);
+        engine.applyPieRule();
+        assertTrue(engine.isPieRuleApplied());
+        assertEquals(pieRulePositionKey, engine.getPositionKey());
+    }
+
+    @Test
+    void whenAllPlacementsAreUndoneShouldMatchEmptyBoard() {
+        BoardEngine engine = new BoardEngine(5, 5);
+        BoardEngine emptyEngine = new BoardEngine(5, 5);
+        engine.placeStone(1, 1, Stone.BLACK);
+        engine.placeStone(2, 2, Stone.WHITE);
+        engine.placeStone(1, 2, Stone.BLACK);
+        engine.placeStone(2, 1, Stone.WHITE);
+        while (engine.undoPlacement()) {
+            assertTrue(engine.getPlacementCount() >= 0);
+        }
+        assertEquals(emptyEngine.getPositionKey(), engine.getPositionKey());
+        assertEquals(emptyEngine.getLegalPlacementCount(Stone.BLACK), engine.getLegalPlacementCount(Stone.BLACK));
+        assertEquals(emptyEngine.getLegalPlacementCount(Stone.WHITE), engine.getLegalPlacementCount(Stone.WHITE));
+        assertEquals(Stone.BLACK, engine.getSideToMove());
+    }
+
+    private static int randomLegalPlacement(BoardEngine engine, int stone, Random random) {
+        int skipped = random.nextInt(engine.getLegalPlacementCount(stone));
+        int index = engine.nextLegalPlacement(stone, 0);
+        for (int i = 0; i < skipped; i++) {
+            index = engine.nextLegalPlacement(stone, index + 1);
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,62 @@
+package it.units.crossway.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameEventCodecTests {
+
+    @Test
+    void whenPlacementIsEncodedShouldDecodeToTheSameEvent() {
+        GameEvent placement = GameEvent.placement(300, "blackP", 101, 7);
+        byte[] bytes = GameEventCodec.encode(placement);
+        assertEquals(placement, GameEventCodec.decode(bytes));
+        assertTrue(bytes.length <= 12);
+    }
+
+    @Test
+    void whenEventWithoutCellIsEncodedShouldDecodeToTheSameEvent() {
+        GameEvent win = GameEvent.of(GameEvent.Kind.WIN, Long.MAX_VALUE, "whiteP");
+        assertEquals(win, GameEventCodec.decode(GameEventCodec.encode(win)));
+    }
+
+    @Test
+    void whenCellDoesNotFitShouldRejectEncoding() {
+        assertThrows(IllegalArgumentException.class,
+                () -> GameEventCodec.encode(GameEvent.placement(1, "blackP", GameEventCodec.MAX_COORDINATE + 1, 1)));
+    }
+
+    @Test
+    void whenBytesAreTruncatedShouldRejectDecoding() {
+        byte[] bytes = GameEventCodec.encode(GameEvent.placement(1, "blackP", 3, 4));
+        byte[] truncated = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+        assertThrows(IllegalArgumentException.class, () -> GameEventCodec.decode(truncated));
+    }
+
+    @Test
+    void whenNicknameLengthExceedsTheBytesShouldRejectDecoding() {
+        byte win = (byte) GameEvent.Kind.WIN.ordinal();
+        byte[] hugeLength = {win, 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x04, 'w'};
+        assertThrows(IllegalArgumentException.class, () -> GameEventCodec.decode(hugeLength));
+        byte[] negativeLength = {win, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 'w'};
+        assertThrows(IllegalArgumentException.class, () -> GameEventCodec.decode(negativeLength));
+    }
+
+    @Test
+    void whenEnvelopeIsEncodedShouldDecodeToTheSameEventsInOrder() {
+        GameEventEnvelope envelope = GameEventEnvelope.of(
+                GameEvent.placement(41, "blackP", 9, 5),
+                GameEvent.of(GameEvent.Kind.WIN, 42, "blackP"));
+        assertEquals(envelope, GameEventCodec.decodeEnvelope(GameEventCodec.encode(envelope)));
+    }
+
+    @Test
+    void whenEnvelopeVersionIsUnknownShouldRejectDecoding() {
+        GameEventEnvelope envelope = new GameEventEnvelope(GameEventEnvelope.VERSION + 1, new ArrayList<>());
+        assertThrows(IllegalArgumentException.class,
+                () -> GameEventCodec.decodeEnvelope(GameEventCodec.encode(envelope)));
+    }
+}
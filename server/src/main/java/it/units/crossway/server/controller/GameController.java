@@ -1,7 +1,9 @@
 package it.units.crossway.server.controller;
 
+import it.units.crossway.server.model.LobbyPage;
 import it.units.crossway.server.model.dto.GameCreationIntent;
 import it.units.crossway.server.model.dto.GameDto;
+import it.units.crossway.server.model.dto.GameStateDto;
 import it.units.crossway.server.model.dto.PlayerDto;
 import it.units.crossway.server.model.dto.StonePlacementIntent;
 import it.units.crossway.server.service.GameService;
@@ -9,25 +11,43 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/games")
 public class GameController {
 
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+
     private final GameService gameService;
 
     public GameController(GameService gameService) {
         this.gameService = gameService;
     }
 
-    @GetMapping("/{uuid}")
-    public ResponseEntity<GameDto> getGameByUuid(@PathVariable String uuid) {
-        return ResponseEntity.ok(gameService.getGameByUuid(uuid));
+    @GetMapping("/{gameKey}")
+    public ResponseEntity<GameDto> getGameByUuid(@PathVariable String gameKey) {
+        return ResponseEntity.ok(gameService.getGameByUuid(gameKey));
+    }
+
+    @GetMapping("/{gameKey}/state")
+    public ResponseEntity<GameStateDto> getGameState(@PathVariable String gameKey,
+                                                     @RequestParam(required = false) Long since) {
+        return ResponseEntity.ok(gameService.getGameState(gameKey, since));
     }
 
     @GetMapping("/available")
-    public ResponseEntity<List<GameDto>> getAllAvailableGames() {
-        return ResponseEntity.ok(gameService.getAllAvailableGames());
+    public ResponseEntity<List<GameDto>> getAllAvailableGames(@RequestParam(defaultValue = "0") long cursor,
+                                                              @RequestParam(defaultValue = "100") int limit) {
+        LobbyPage lobbyPage = gameService.getAvailableGames(cursor, limit);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (lobbyPage.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(lobbyPage.getNextCursor()));
+        }
+        return response.body(lobbyPage.getGames().stream()
+                .map(GameDto::new)
+                .collect(Collectors.toList()));
     }
 
     @PostMapping
@@ -35,26 +55,30 @@ public class GameController {
         return ResponseEntity.ok(gameService.createGame(gameCreationIntent));
     }
 
-    @DeleteMapping("/{uuid}")
-    public ResponseEntity<Void> deleteGameByUuid(@PathVariable String uuid) {
-        gameService.deleteGameByUuid(uuid);
+    @DeleteMapping("/{gameKey}")
+    public ResponseEntity<Void> deleteGameByUuid(@PathVariable String gameKey) {
+        gameService.deleteGameByUuid(gameKey);
         return ResponseEntity.ok().build();
     }
 
-    @PostMapping("/{uuid}/events/joining")
-    public ResponseEntity<GameDto> handleJoiningEvent(@PathVariable String uuid, @RequestBody PlayerDto playerDto) {
-        return ResponseEntity.ok(gameService.handleJoiningEvent(uuid, playerDto));
+    @PostMapping("/{gameKey}/events/joining")
+    public ResponseEntity<GameDto> handleJoiningEvent(@PathVariable String gameKey, @RequestBody PlayerDto playerDto) {
+        return ResponseEntity.ok(gameService.handleJoiningEvent(gameKey, playerDto));
     }
 
-    @PostMapping("/{uuid}/events/placement")
-    public ResponseEntity<Void> handlePlacementEvent(@PathVariable String uuid, @RequestBody StonePlacementIntent stonePlacementIntent) {
-        gameService.handlePlacementEvent(uuid, stonePlacementIntent);
+    @PostMapping("/{gameKey}/events/placement")
+    public ResponseEntity<Void> handlePlacementEvent(@PathVariable String gameKey,
+                                                     @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) Long idempotencyKey,
+                                                     @RequestBody StonePlacementIntent stonePlacementIntent) {
+        gameService.handlePlacementEvent(gameKey, stonePlacementIntent, idempotencyKey);
         return ResponseEntity.ok().build();
     }
 
-    @PostMapping("/{uuid}/events/pie-rule")
-    public ResponseEntity<Void> handlePieRuleEvent(@PathVariable String uuid, @RequestBody PlayerDto playerDto) {
-        gameService.handlePieRuleEvent(uuid, playerDto);
+    @PostMapping("/{gameKey}/events/pie-rule")
+    public ResponseEntity<Void> handlePieRuleEvent(@PathVariable String gameKey,
+                                                   @RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) Long idempotencyKey,
+                                                   @RequestBody PlayerDto playerDto) {
+        gameService.handlePieRuleEvent(gameKey, playerDto, idempotencyKey);
         return ResponseEntity.ok().build();
     }
 
@@ -0,0 +1,82 @@
+package it.units.crossway.server.controller;
+
+import it.units.crossway.core.GameEvent;
+import it.units.crossway.server.exception.GameException;
+import it.units.crossway.server.exception.ServerException;
+import it.units.crossway.server.model.dto.EventAck;
+import it.units.crossway.server.model.dto.EventError;
+import it.units.crossway.server.model.dto.GameDto;
+import it.units.crossway.server.model.dto.PlayerDto;
+import it.units.crossway.server.model.dto.StonePlacementIntent;
+import it.units.crossway.server.service.GameService;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.stereotype.Controller;
+
+// The STOMP counterpart of the game events of GameController: a client sends to /app/games/{gameKey}/events/...
+// on the session it already holds, and gets the outcome back on its own /user/queue/... destinations
+@Controller
+public class GameEventController {
+
+    public static final String ACKS_QUEUE = "/queue/acks";
+    public static final String JOINS_QUEUE = "/queue/joins";
+    public static final String ERRORS_QUEUE = "/queue/errors";
+    public static final String IDEMPOTENCY_KEY_HEADER = "idempotency-key";
+
+    private final GameService gameService;
+
+    public GameEventController(GameService gameService) {
+        this.gameService = gameService;
+    }
+
+    @MessageMapping("/games/{gameKey}/events/joining")
+    @SendToUser(JOINS_QUEUE)
+    public GameDto handleJoiningEvent(@DestinationVariable String gameKey, @Payload PlayerDto playerDto) {
+        return gameService.handleJoiningEvent(gameKey, playerDto);
+    }
+
+    @MessageMapping("/games/{gameKey}/events/placement")
+    @SendToUser(ACKS_QUEUE)
+    public EventAck handlePlacementEvent(@DestinationVariable String gameKey,
+                                         @Header(value = IDEMPOTENCY_KEY_HEADER, required = false) Long idempotencyKey,
+                                         @Payload StonePlacementIntent stonePlacementIntent) {
+        gameService.handlePlacementEvent(gameKey, stonePlacementIntent, idempotencyKey);
+        return new EventAck(gameKey, "placement", idempotencyKey);
+    }
+
+    @MessageMapping("/games/{gameKey}/events/pie-rule")
+    @SendToUser(ACKS_QUEUE)
+    public EventAck handlePieRuleEvent(@DestinationVariable String gameKey,
+                                       @Header(value = IDEMPOTENCY_KEY_HEADER, required = false) Long idempotencyKey,
+                                       @Payload PlayerDto playerDto) {
+        gameService.handlePieRuleEvent(gameKey, playerDto, idempotencyKey);
+        return new EventAck(gameKey, "pie-rule", idempotencyKey);
+    }
+
+    // binary sessions send every event to this one destination, the kind says what it is
+    @MessageMapping("/games/{gameKey}/events")
+    @SendToUser(ACKS_QUEUE)
+    public EventAck handleGameEvent(@DestinationVariable String gameKey,
+                                    @Header(value = IDEMPOTENCY_KEY_HEADER, required = false) Long idempotencyKey,
+                                    @Payload GameEvent gameEvent) {
+        if (gameEvent.getKind() == GameEvent.Kind.PLACEMENT) {
+            return handlePlacementEvent(gameKey, idempotencyKey,
+                    new StonePlacementIntent(gameEvent.getRow(), gameEvent.getColumn(), gameEvent.getNickname()));
+        }
+        if (gameEvent.getKind() == GameEvent.Kind.PIE_RULE) {
+            return handlePieRuleEvent(gameKey, idempotencyKey, new PlayerDto(gameEvent.getNickname()));
+        }
+        throw new GameException("A client cannot send " + gameEvent.getKind() + " events");
+    }
+
+    @MessageExceptionHandler
+    @SendToUser(ERRORS_QUEUE)
+    public EventError handleServerException(ServerException ex) {
+        return new EventError(ex.getMessage());
+    }
+
+}
@@ -0,0 +1,27 @@
+package it.units.crossway.server.controller;
+
+import it.units.crossway.server.model.dto.LaneDto;
+import it.units.crossway.server.service.GameEventLanes;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/executor")
+public class LaneController {
+
+    private final GameEventLanes gameEventLanes;
+
+    public LaneController(GameEventLanes gameEventLanes) {
+        this.gameEventLanes = gameEventLanes;
+    }
+
+    @GetMapping("/lanes")
+    public ResponseEntity<List<LaneDto>> getLanes() {
+        return ResponseEntity.ok(gameEventLanes.getLanes());
+    }
+
+}
@@ -0,0 +1,28 @@
+package it.units.crossway.server.controller;
+
+import it.units.crossway.server.model.dto.GameDto;
+import it.units.crossway.server.service.GameService;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Subscribing to /app/lobby returns the current snapshot; the changes that follow are pushed on /topic/lobby
+@Controller
+public class LobbyController {
+
+    private final GameService gameService;
+
+    public LobbyController(GameService gameService) {
+        this.gameService = gameService;
+    }
+
+    @SubscribeMapping("/lobby")
+    public List<GameDto> getLobbySnapshot() {
+        return gameService.getAllAvailableGames().stream()
+                .map(GameDto::new)
+                .collect(Collectors.toList());
+    }
+
+}
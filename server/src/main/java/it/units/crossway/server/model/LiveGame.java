@@ -0,0 +1,205 @@
+package it.units.crossway.server.model;
+
+import it.units.crossway.core.BoardEngine;
+import it.units.crossway.core.GameEvent;
+import it.units.crossway.core.Stone;
+import it.units.crossway.server.exception.GameException;
+import it.units.crossway.server.model.entity.Game;
+import it.units.crossway.server.model.entity.GameStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class LiveGame {
+
+    private final long id;
+    private final String uuid;
+    private final int boardSize;
+    private BoardEngine board;
+    private volatile String blackPlayerNickname;
+    private volatile String whitePlayerNickname;
+    private final AtomicReference<GameStatus> gameStatus;
+    private boolean ended;
+    private long sequence;
+    private final List<GameEvent> events = new ArrayList<>();
+    private long blackIdempotencyKey;
+    private long whiteIdempotencyKey;
+
+    public LiveGame(long id, String uuid, String blackPlayerNickname, int boardSize) {
+        this.id = id;
+        this.uuid = uuid;
+        this.boardSize = boardSize;
+        this.blackPlayerNickname = blackPlayerNickname;
+        this.gameStatus = new AtomicReference<>(GameStatus.CREATED);
+    }
+
+    // games stored before compact ids were introduced have none, their id is 0
+    public LiveGame(Game game) {
+        this.id = game.getGameId() == null ? 0 : game.getGameId();
+        this.uuid = game.getUuid();
+        this.boardSize = game.getBoardSize();
+        this.blackPlayerNickname = game.getBlackPlayerNickname();
+        this.whitePlayerNickname = game.getWhitePlayerNickname();
+        this.gameStatus = new AtomicReference<>(game.getGameStatus());
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getUuid() {
+        return uuid;
+    }
+
+    public int getBoardSize() {
+        return boardSize;
+    }
+
+    // the board is only allocated once the game is actually played
+    public synchronized BoardEngine getBoard() {
+        if (board == null) {
+            board = new BoardEngine(boardSize, boardSize);
+        }
+        return board;
+    }
+
+    public String getBlackPlayerNickname() {
+        return blackPlayerNickname;
+    }
+
+    public String getWhitePlayerNickname() {
+        return whitePlayerNickname;
+    }
+
+    public GameStatus getGameStatus() {
+        return gameStatus.get();
+    }
+
+    // events of a game are recorded from its lane, so their sequence numbers follow the publishing order
+    public synchronized GameEvent recordEvent(GameEvent.Kind kind, String nickname, int row, int column) {
+        GameEvent gameEvent = new GameEvent(kind, ++sequence, nickname, row, column);
+        events.add(gameEvent);
+        return gameEvent;
+    }
+
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    // sequences start at 1 and have no gaps, so the events after a sequence are a plain tail of the history
+    public synchronized List<GameEvent> getEventsSince(long since) {
+        if (since < 0 || since > sequence) {
+            throw new GameException("The sequence must be between 0 and " + sequence);
+        }
+        return new ArrayList<>(events.subList((int) since, events.size()));
+    }
+
+    // one character per intersection in row-major order: '.' when empty, 'B' or 'W' when occupied
+    public synchronized String getStonesSnapshot() {
+        StringBuilder stones = new StringBuilder(boardSize * boardSize);
+        for (int row = BoardEngine.FIRST_ROW; row <= boardSize; row++) {
+            for (int column = BoardEngine.FIRST_COLUMN; column <= boardSize; column++) {
+                int stone = board == null ? Stone.EMPTY : board.getStoneAt(row, column);
+                stones.append(stone == Stone.BLACK ? 'B' : stone == Stone.WHITE ? 'W' : '.');
+            }
+        }
+        return stones.toString();
+    }
+
+    public synchronized boolean isEnded() {
+        return ended;
+    }
+
+    public synchronized void copyTo(Game game) {
+        game.setUuid(uuid);
+        game.setGameId(id == 0 ? null : id);
+        game.setBoardSize(boardSize);
+        game.setBlackPlayerNickname(blackPlayerNickname);
+        game.setWhitePlayerNickname(whitePlayerNickname);
+        game.setGameStatus(gameStatus.get());
+    }
+
+    // only the joiner that moves the game out of CREATED wins, the others fail at once without taking the lock
+    public void join(String nickname) {
+        if (whitePlayerNickname != null || !gameStatus.compareAndSet(GameStatus.CREATED, GameStatus.IN_PROGRESS)) {
+            throw new GameException("The game is not valid anymore");
+        }
+        synchronized (this) {
+            whitePlayerNickname = nickname;
+        }
+    }
+
+    // the keys of a player only grow, so a key that is not above the last accepted one is a retry or arrived late
+    public synchronized boolean isFreshIdempotencyKey(String nickname, long idempotencyKey) {
+        if (Objects.equals(nickname, blackPlayerNickname)) {
+            return idempotencyKey > blackIdempotencyKey;
+        }
+        if (Objects.equals(nickname, whitePlayerNickname)) {
+            return idempotencyKey > whiteIdempotencyKey;
+        }
+        return true;
+    }
+
+    public synchronized void acceptIdempotencyKey(String nickname, long idempotencyKey) {
+        if (Objects.equals(nickname, blackPlayerNickname)) {
+            blackIdempotencyKey = Math.max(blackIdempotencyKey, idempotencyKey);
+        } else if (Objects.equals(nickname, whitePlayerNickname)) {
+            whiteIdempotencyKey = Math.max(whiteIdempotencyKey, idempotencyKey);
+        }
+    }
+
+    // returns true when the placement wins the game
+    public synchronized boolean placeStone(String nickname, int row, int column) {
+        if (ended || gameStatus.get() != GameStatus.IN_PROGRESS) {
+            throw new GameException("The game is ended");
+        }
+        int stone = stoneOf(nickname);
+        if (stone != getStoneToMove()) {
+            throw new GameException("It is not the turn of the player with {nickname = " + nickname + "}");
+        }
+        switch (getBoard().validatePlacement(row, column, stone)) {
+            case OCCUPIED:
+                throw new GameException("Placement not allowed: intersection already occupied");
+            case OUT_OF_BOARD:
+                throw new GameException("Placement not allowed: out of board");
+            case DIAGONAL:
+                throw new GameException("Placement not allowed: diagonal violation");
+        }
+        getBoard().placeStone(row, column, stone);
+        ended = getBoard().hasWon(stone);
+        return ended;
+    }
+
+    // the pie rule can only be claimed by WHITE right after the first placement; the claimer becomes BLACK
+    public synchronized boolean applyPieRule(String claimer) {
+        if (ended || getBoard().isPieRuleApplied() || getBoard().getPlacementCount() != 1 ||
+                !Objects.equals(claimer, whitePlayerNickname)) {
+            return false;
+        }
+        whitePlayerNickname = blackPlayerNickname;
+        blackPlayerNickname = claimer;
+        long claimerIdempotencyKey = whiteIdempotencyKey;
+        whiteIdempotencyKey = blackIdempotencyKey;
+        blackIdempotencyKey = claimerIdempotencyKey;
+        getBoard().applyPieRule();
+        return true;
+    }
+
+    // a player without any legal placement forfeits the turn, so the opponent moves again
+    private int getStoneToMove() {
+        int stone = getBoard().getSideToMove();
+        return getBoard().hasLegalPlacement(stone) ? stone : Stone.opposite(stone);
+    }
+
+    private int stoneOf(String nickname) {
+        if (Objects.equals(nickname, blackPlayerNickname)) {
+            return Stone.BLACK;
+        }
+        if (Objects.equals(nickname, whitePlayerNickname)) {
+            return Stone.WHITE;
+        }
+        throw new GameException("The player with {nickname = " + nickname + "} does belong to this game");
+    }
+}
@@ -0,0 +1,16 @@
+package it.units.crossway.server.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+public class LobbyPage {
+
+    private List<LiveGame> games;
+    // null when there are no further pages
+    private Long nextCursor;
+
+}
@@ -0,0 +1,17 @@
+package it.units.crossway.server.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EventAck {
+
+    private String gameKey;
+    private String event;
+    // echoes the key of the acknowledged submission, null when it was sent without one
+    private Long idempotencyKey;
+
+}
@@ -0,0 +1,14 @@
+package it.units.crossway.server.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class EventError {
+
+    private String message;
+
+}
@@ -1,5 +1,6 @@
 package it.units.crossway.server.model.dto;
 
+import it.units.crossway.server.model.entity.Game;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -10,5 +11,10 @@ import lombok.NoArgsConstructor;
 public class GameCreationIntent {
 
     private String playerNickname;
+    private int boardSize = Game.DEFAULT_BOARD_SIZE;
+
+    public GameCreationIntent(String playerNickname) {
+        this.playerNickname = playerNickname;
+    }
 
 }
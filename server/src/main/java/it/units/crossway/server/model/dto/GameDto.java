@@ -1,6 +1,8 @@
 package it.units.crossway.server.model.dto;
 
+import it.units.crossway.server.model.LiveGame;
 import it.units.crossway.server.model.entity.Game;
+import it.units.crossway.server.service.GameIdGenerator;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
@@ -8,14 +10,26 @@ import lombok.NoArgsConstructor;
 @NoArgsConstructor
 public class GameDto {
 
+    private String id;
     private String uuid;
     private String whitePlayerNickname;
     private String blackPlayerNickname;
+    private int boardSize;
 
     public GameDto(Game game) {
+        this.id = game.getGameId() == null ? null : GameIdGenerator.toBase62(game.getGameId());
         this.uuid = game.getUuid();
         this.whitePlayerNickname = game.getWhitePlayerNickname();
         this.blackPlayerNickname = game.getBlackPlayerNickname();
+        this.boardSize = game.getBoardSize();
+    }
+
+    public GameDto(LiveGame liveGame) {
+        this.id = liveGame.getId() == 0 ? null : GameIdGenerator.toBase62(liveGame.getId());
+        this.uuid = liveGame.getUuid();
+        this.whitePlayerNickname = liveGame.getWhitePlayerNickname();
+        this.blackPlayerNickname = liveGame.getBlackPlayerNickname();
+        this.boardSize = liveGame.getBoardSize();
     }
 
 }
@@ -0,0 +1,35 @@
+package it.units.crossway.server.model.dto;
+
+import it.units.crossway.core.GameEvent;
+import it.units.crossway.server.model.LiveGame;
+import it.units.crossway.server.service.GameIdGenerator;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class GameStateDto {
+
+    private String id;
+    private String uuid;
+    private String whitePlayerNickname;
+    private String blackPlayerNickname;
+    private int boardSize;
+    private long sequence;
+    private List<GameEvent> events;
+    private String stones;
+
+    public GameStateDto(LiveGame liveGame, List<GameEvent> events, String stones) {
+        this.id = liveGame.getId() == 0 ? null : GameIdGenerator.toBase62(liveGame.getId());
+        this.uuid = liveGame.getUuid();
+        this.whitePlayerNickname = liveGame.getWhitePlayerNickname();
+        this.blackPlayerNickname = liveGame.getBlackPlayerNickname();
+        this.boardSize = liveGame.getBoardSize();
+        this.sequence = liveGame.getSequence();
+        this.events = events;
+        this.stones = stones;
+    }
+
+}
@@ -0,0 +1,16 @@
+package it.units.crossway.server.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LaneDto {
+
+    private int lane;
+    private int queueDepth;
+    private long completedEvents;
+
+}
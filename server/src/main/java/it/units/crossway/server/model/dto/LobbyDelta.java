@@ -0,0 +1,20 @@
+package it.units.crossway.server.model.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class LobbyDelta {
+
+    public enum Type {
+        ADDED,
+        REMOVED
+    }
+
+    private Type type;
+    private GameDto game;
+
+}
@@ -6,15 +6,25 @@ import javax.persistence.*;
 
 @Data
 @Entity
-@Table(name = "game")
+@Table(name = "game", indexes = {
+        @Index(name = "idx_game_status_game_id", columnList = "gameStatus, gameId"),
+        @Index(name = "uk_game_uuid", columnList = "uuid", unique = true),
+        @Index(name = "uk_game_game_id", columnList = "gameId", unique = true)
+})
 public class Game {
 
+    public static final int DEFAULT_BOARD_SIZE = 19;
+    public static final int MIN_BOARD_SIZE = 9;
+    public static final int MAX_BOARD_SIZE = 101;
+
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
     private int id;
     private String uuid;
+    private Long gameId;
     private String whitePlayerNickname;
     private String blackPlayerNickname;
     private GameStatus gameStatus;
+    private int boardSize = DEFAULT_BOARD_SIZE;
 
 }
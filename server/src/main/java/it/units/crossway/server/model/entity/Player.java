@@ -8,7 +8,9 @@ import javax.persistence.*;
 @Data
 @NoArgsConstructor
 @Entity
-@Table(name = "player")
+@Table(name = "player", indexes = {
+        @Index(name = "uk_player_nickname", columnList = "nickname", unique = true)
+})
 public class Player {
 
     @Id
@@ -1,16 +1,26 @@
 package it.units.crossway.server.repository;
 
 import it.units.crossway.server.model.entity.Game;
+import it.units.crossway.server.model.entity.GameStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface GameRepository extends JpaRepository<Game, Integer> {
     Optional<Game> findByUuid(String uuid);
 
+    Optional<Game> findByGameId(long gameId);
+
     boolean existsByUuid(String uuid);
 
     void deleteByUuid(String uuid);
+
+    List<Game> findAllByUuidIn(Collection<String> uuids);
+
+    List<Game> findByGameStatusAndGameIdGreaterThanOrderByGameIdAsc(GameStatus gameStatus, long gameId, Pageable pageable);
 }
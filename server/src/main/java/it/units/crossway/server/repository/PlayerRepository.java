@@ -2,7 +2,12 @@ package it.units.crossway.server.repository;
 
 import it.units.crossway.server.model.entity.Player;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface PlayerRepository extends JpaRepository<Player, Integer> {
@@ -10,5 +15,11 @@ public interface PlayerRepository extends JpaRepository<Player, Integer> {
 
     boolean existsByNickname(String nickname);
 
-    void deleteByNickname(String nickname);
+    @Query("select p.nickname from Player p")
+    List<String> findAllNicknames();
+
+    @Transactional
+    @Modifying
+    @Query("delete from Player p where p.nickname = :nickname")
+    int deleteByNickname(@Param("nickname") String nickname);
 }
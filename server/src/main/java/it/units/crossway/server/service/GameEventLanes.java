@@ -0,0 +1,86 @@
+package it.units.crossway.server.service;
+
+import it.units.crossway.server.exception.GameException;
+import it.units.crossway.server.model.dto.LaneDto;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+// Every game is pinned to one single-threaded lane by its uuid: events of the same game run one at a time
+// in arrival order, while different games spread over the lanes. A full lane rejects new events instead of
+// queueing them without limit.
+@Component
+public class GameEventLanes {
+
+    private final ThreadPoolExecutor[] lanes;
+
+    public GameEventLanes(@Value("${game-lanes.count:0}") int laneCount,
+                          @Value("${game-lanes.queue-capacity:1024}") int queueCapacity) {
+        int count = laneCount > 0 ? laneCount : Runtime.getRuntime().availableProcessors();
+        this.lanes = new ThreadPoolExecutor[count];
+        for (int lane = 0; lane < count; lane++) {
+            String threadName = "game-lane-" + lane;
+            lanes[lane] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                Thread thread = new Thread(runnable, threadName);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public void execute(String uuid, Runnable event) {
+        execute(uuid, () -> {
+            event.run();
+            return null;
+        });
+    }
+
+    public <T> T execute(String uuid, Supplier<T> event) {
+        Future<T> result;
+        try {
+            result = lanes[laneOf(uuid)].submit(event::get);
+        } catch (RejectedExecutionException e) {
+            throw new GameException("Too many pending events for the game with {uuid = " + uuid + "}, retry later");
+        }
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GameException("Interrupted while waiting for the game with {uuid = " + uuid + "}");
+        }
+    }
+
+    public List<LaneDto> getLanes() {
+        List<LaneDto> laneDtos = new ArrayList<>(lanes.length);
+        for (int lane = 0; lane < lanes.length; lane++) {
+            laneDtos.add(new LaneDto(lane, lanes[lane].getQueue().size(), lanes[lane].getCompletedTaskCount()));
+        }
+        return laneDtos;
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.shutdown();
+        }
+        for (ThreadPoolExecutor lane : lanes) {
+            lane.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    private int laneOf(String uuid) {
+        int hash = uuid.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+}
@@ -0,0 +1,396 @@
+package it.units.crossway.server.service;
+
+import it.units.crossway.core.GameEvent;
+import it.units.crossway.core.GameEventCodec;
+import it.units.crossway.server.exception.GameException;
+import it.units.crossway.server.model.LiveGame;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+// Every change of a live game is appended to the active memory-mapped segment of the log before it is published,
+// so an append is a copy into memory; the segment is forced to disk in batches every fsync interval. A record is
+// its length, its CRC32 and its body, so a record torn by a crash ends the replay of its segment. On startup the
+// segments are replayed to rebuild the live games and appending goes on in a new segment. Sealed segments that
+// hold records of finished games are rewritten without them, oldest first, so a game can never lose its creation
+// while keeping its later records.
+@Component
+public class GameEventLog {
+
+    private static final Logger log = LoggerFactory.getLogger(GameEventLog.class);
+    private static final String SEGMENT_PREFIX = "events-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String COMPACTION_SUFFIX = ".compacting";
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    private static final byte CREATED = 0;
+    private static final byte EVENT = 1;
+    private static final byte FINISHED = 2;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final long fsyncIntervalMs;
+    private final long compactionIntervalMs;
+    private final List<Segment> sealedSegments = new ArrayList<>();
+    private final List<LiveGame> recoveredGames = new ArrayList<>();
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "game-event-log");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Segment activeSegment;
+    private boolean dirty;
+
+    // a blank directory disables the log
+    public GameEventLog(@Value("${event-log.dir:}") String directory,
+                        @Value("${event-log.segment-size-bytes:16777216}") int segmentSize,
+                        @Value("${event-log.fsync-interval-ms:10}") long fsyncIntervalMs,
+                        @Value("${event-log.compaction-interval-ms:1000}") long compactionIntervalMs) {
+        this.directory = directory.isBlank() ? null : Paths.get(directory);
+        this.segmentSize = segmentSize;
+        this.fsyncIntervalMs = fsyncIntervalMs;
+        this.compactionIntervalMs = compactionIntervalMs;
+    }
+
+    @PostConstruct
+    public synchronized void open() {
+        if (directory == null) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            Map<String, LiveGame> games = new LinkedHashMap<>();
+            for (Path path : listSegments()) {
+                Segment segment = new Segment(indexOf(path), path);
+                forEachRecord(path, body -> replayRecord(segment, ByteBuffer.wrap(body), games));
+                sealedSegments.add(segment);
+            }
+            for (Segment segment : sealedSegments) {
+                int gameCount = segment.uuids.size();
+                segment.uuids.retainAll(games.keySet());
+                segment.finishedGames = gameCount - segment.uuids.size();
+            }
+            recoveredGames.addAll(games.values());
+            long nextIndex = sealedSegments.isEmpty() ? 0 : sealedSegments.get(sealedSegments.size() - 1).index + 1;
+            activeSegment = openSegment(nextIndex);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open the game event log in " + directory, e);
+        }
+        log.info("Recovered {} live games from {} log segments", recoveredGames.size(), sealedSegments.size());
+        scheduler.scheduleWithFixedDelay(this::sync, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(this::compact, 0, compactionIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(compactionIntervalMs + fsyncIntervalMs * 10, TimeUnit.MILLISECONDS);
+        sync();
+    }
+
+    public List<LiveGame> getRecoveredGames() {
+        return Collections.unmodifiableList(recoveredGames);
+    }
+
+    public void appendCreated(LiveGame liveGame) {
+        byte[] uuid = liveGame.getUuid().getBytes(StandardCharsets.UTF_8);
+        byte[] nickname = liveGame.getBlackPlayerNickname().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(1 + Short.BYTES + uuid.length + Long.BYTES + Integer.BYTES +
+                Short.BYTES + nickname.length);
+        body.put(CREATED);
+        putString(body, uuid);
+        body.putLong(liveGame.getId());
+        body.putInt(liveGame.getBoardSize());
+        putString(body, nickname);
+        append(liveGame.getUuid(), body.array(), false);
+    }
+
+    // an idempotency key of 0 means the event was submitted without one
+    public void appendEvent(String uuid, GameEvent gameEvent, long idempotencyKey) {
+        byte[] uuidBytes = uuid.getBytes(StandardCharsets.UTF_8);
+        byte[] event = GameEventCodec.encode(gameEvent);
+        ByteBuffer body = ByteBuffer.allocate(1 + Short.BYTES + uuidBytes.length + Long.BYTES + event.length);
+        body.put(EVENT);
+        putString(body, uuidBytes);
+        body.putLong(idempotencyKey);
+        body.put(event);
+        append(uuid, body.array(), false);
+    }
+
+    public void appendFinished(String uuid) {
+        byte[] uuidBytes = uuid.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer body = ByteBuffer.allocate(1 + Short.BYTES + uuidBytes.length);
+        body.put(FINISHED);
+        putString(body, uuidBytes);
+        append(uuid, body.array(), true);
+    }
+
+    private synchronized void append(String uuid, byte[] body, boolean finished) {
+        if (activeSegment == null) {
+            return;
+        }
+        if (HEADER_BYTES + body.length > segmentSize) {
+            throw new IllegalArgumentException("A record of " + body.length + " bytes does not fit in a segment");
+        }
+        if (activeSegment.buffer.remaining() < HEADER_BYTES + body.length) {
+            roll();
+        }
+        activeSegment.buffer.putInt(body.length).putInt(checksum(body)).put(body);
+        dirty = true;
+        if (!finished) {
+            activeSegment.uuids.add(uuid);
+            return;
+        }
+        for (Segment segment : sealedSegments) {
+            if (segment.uuids.remove(uuid)) {
+                segment.finishedGames++;
+            }
+        }
+        if (activeSegment.uuids.remove(uuid)) {
+            activeSegment.finishedGames++;
+        }
+    }
+
+    private void roll() {
+        activeSegment.buffer.force();
+        activeSegment.buffer = null;
+        sealedSegments.add(activeSegment);
+        try {
+            activeSegment = openSegment(activeSegment.index + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not roll the game event log", e);
+        }
+    }
+
+    // forcing happens outside the lock, so appends never wait for the disk
+    void sync() {
+        MappedByteBuffer buffer;
+        synchronized (this) {
+            if (!dirty) {
+                return;
+            }
+            dirty = false;
+            buffer = activeSegment.buffer;
+        }
+        buffer.force();
+    }
+
+    // a pass starts once a sealed segment holds no live game, like the empty ones left by restarts and the ones
+    // holding only FINISHED records, or at least as many finished games as live ones. Segments are handled
+    // oldest first and a failure stops the pass, so a FINISHED record is only dropped after the older records
+    // of its game
+    public void compact() {
+        List<Segment> segments;
+        synchronized (this) {
+            if (sealedSegments.stream().noneMatch(segment -> segment.uuids.isEmpty() ||
+                    segment.finishedGames > 0 && segment.finishedGames >= segment.uuids.size())) {
+                return;
+            }
+            segments = sealedSegments.stream()
+                    .filter(segment -> segment.uuids.isEmpty() || segment.finishedGames > 0)
+                    .collect(Collectors.toList());
+        }
+        for (Segment segment : segments) {
+            Set<String> liveUuids;
+            synchronized (this) {
+                liveUuids = new HashSet<>(segment.uuids);
+            }
+            try {
+                if (liveUuids.isEmpty()) {
+                    Files.deleteIfExists(segment.path);
+                    synchronized (this) {
+                        sealedSegments.remove(segment);
+                    }
+                } else {
+                    rewrite(segment.path, liveUuids);
+                    synchronized (this) {
+                        segment.finishedGames = liveUuids.size() - segment.uuids.size();
+                    }
+                }
+            } catch (IOException | UncheckedIOException e) {
+                log.warn("Could not compact the log segment {}, retrying on the next pass", segment.path, e);
+                return;
+            }
+        }
+    }
+
+    private void rewrite(Path path, Set<String> liveUuids) throws IOException {
+        Path compactedPath = path.resolveSibling(path.getFileName() + COMPACTION_SUFFIX);
+        try (FileChannel channel = FileChannel.open(compactedPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            forEachRecord(path, body -> {
+                ByteBuffer record = ByteBuffer.wrap(body);
+                record.get();
+                if (!liveUuids.contains(getString(record))) {
+                    return;
+                }
+                ByteBuffer framed = ByteBuffer.allocate(HEADER_BYTES + body.length);
+                framed.putInt(body.length).putInt(checksum(body)).put(body).flip();
+                try {
+                    while (framed.hasRemaining()) {
+                        channel.write(framed);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            channel.force(true);
+        }
+        Files.move(compactedPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // the events are applied the way the game service applied them before logging them
+    private static void replayRecord(Segment segment, ByteBuffer body, Map<String, LiveGame> games) {
+        byte type = body.get();
+        String uuid = getString(body);
+        if (type == FINISHED) {
+            games.remove(uuid);
+            return;
+        }
+        segment.uuids.add(uuid);
+        if (type == CREATED) {
+            long id = body.getLong();
+            int boardSize = body.getInt();
+            games.put(uuid, new LiveGame(id, uuid, getString(body), boardSize));
+            return;
+        }
+        LiveGame liveGame = games.get(uuid);
+        if (liveGame == null) {
+            return;
+        }
+        long idempotencyKey = body.getLong();
+        byte[] event = new byte[body.remaining()];
+        body.get(event);
+        GameEvent gameEvent = GameEventCodec.decode(event);
+        try {
+            replayEvent(liveGame, gameEvent, idempotencyKey);
+        } catch (GameException e) {
+            log.warn("Skipping the logged event {} of the game with {uuid = {}}: {}", gameEvent, uuid, e.getMessage());
+        }
+    }
+
+    // keys are accepted once the event is applied, as the live path does, so a pie rule stores its key in the seat
+    // the claimer moved to
+    private static void replayEvent(LiveGame liveGame, GameEvent gameEvent, long idempotencyKey) {
+        String nickname = gameEvent.getNickname();
+        switch (gameEvent.getKind()) {
+            case JOIN:
+                liveGame.join(nickname);
+                break;
+            case PLACEMENT:
+                liveGame.placeStone(nickname, gameEvent.getRow(), gameEvent.getColumn());
+                break;
+            case PIE_RULE:
+                if (!liveGame.applyPieRule(nickname)) {
+                    throw new GameException("The pie rule claim is not valid");
+                }
+                break;
+            case WIN:
+                break;
+        }
+        if (idempotencyKey != 0) {
+            liveGame.acceptIdempotencyKey(nickname, idempotencyKey);
+        }
+        liveGame.recordEvent(gameEvent.getKind(), nickname, gameEvent.getRow(), gameEvent.getColumn());
+    }
+
+    private static void forEachRecord(Path path, Consumer<byte[]> consumer) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        while (buffer.remaining() >= HEADER_BYTES) {
+            int length = buffer.getInt();
+            int expectedChecksum = buffer.getInt();
+            if (length <= 0 || length > buffer.remaining()) {
+                return;
+            }
+            byte[] body = new byte[length];
+            buffer.get(body);
+            if (checksum(body) != expectedChecksum) {
+                log.warn("Torn record at {} of the log segment {}, ignoring the rest of it",
+                        buffer.position() - length - HEADER_BYTES, path);
+                return;
+            }
+            consumer.accept(body);
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            return paths.filter(path -> path.getFileName().toString().startsWith(SEGMENT_PREFIX))
+                    .filter(path -> path.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted(Comparator.comparingLong(GameEventLog::indexOf))
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private Segment openSegment(long index) throws IOException {
+        Path path = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        Segment segment = new Segment(index, path);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        }
+        return segment;
+    }
+
+    private static long indexOf(Path path) {
+        String fileName = path.getFileName().toString();
+        return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(body);
+        return (int) crc32.getValue();
+    }
+
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // the games of a segment are those with records in it that have not finished yet
+    private static final class Segment {
+
+        private final long index;
+        private final Path path;
+        private final Set<String> uuids = new HashSet<>();
+        private MappedByteBuffer buffer;
+        private int finishedGames;
+
+        private Segment(long index, Path path) {
+            this.index = index;
+            this.path = path;
+        }
+    }
+}
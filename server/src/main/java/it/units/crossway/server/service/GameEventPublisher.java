@@ -0,0 +1,115 @@
+package it.units.crossway.server.service;
+
+import it.units.crossway.core.GameEvent;
+import it.units.crossway.core.GameEventEnvelope;
+import it.units.crossway.server.config.GameEventMessageConverter;
+import it.units.crossway.server.model.LiveGame;
+import it.units.crossway.server.model.dto.StonePlacementIntent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Events published together go out as one envelope on /topic/{routingKey}/events in JSON and, only while
+// someone subscribes to it, on /topic/{routingKey}/binary in binary form. /topic/{uuid} keeps the old
+// one-message-per-event format, with the event in a header, for the clients that still subscribe to it.
+@Component
+public class GameEventPublisher {
+
+    public static final String EVENTS_TOPIC_SUFFIX = "/events";
+    public static final String BINARY_TOPIC_SUFFIX = "/binary";
+
+    private final SimpMessagingTemplate simpMessagingTemplate;
+    // binary subscribers per destination, and the binary destination of each "session:subscription" pair
+    private final Map<String, Integer> binarySubscribers = new ConcurrentHashMap<>();
+    private final Map<String, String> binarySubscriptions = new ConcurrentHashMap<>();
+
+    public GameEventPublisher(SimpMessagingTemplate simpMessagingTemplate) {
+        this.simpMessagingTemplate = simpMessagingTemplate;
+    }
+
+    public static String routingKeyOf(LiveGame liveGame) {
+        return liveGame.getId() != 0 ? GameIdGenerator.toBase62(liveGame.getId()) : liveGame.getUuid();
+    }
+
+    public void publish(LiveGame liveGame, GameEvent... events) {
+        GameEventEnvelope envelope = GameEventEnvelope.of(events);
+        String topic = "/topic/" + routingKeyOf(liveGame);
+        simpMessagingTemplate.convertAndSend(topic + EVENTS_TOPIC_SUFFIX, envelope);
+        if (binarySubscribers.containsKey(topic + BINARY_TOPIC_SUFFIX)) {
+            SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+            accessor.setContentType(GameEventMessageConverter.MIME_TYPE);
+            accessor.setLeaveMutable(true);
+            simpMessagingTemplate.convertAndSend(topic + BINARY_TOPIC_SUFFIX, envelope, accessor.getMessageHeaders());
+        }
+        for (GameEvent event : events) {
+            publishToUuidTopic(liveGame.getUuid(), event);
+        }
+    }
+
+    private void publishToUuidTopic(String uuid, GameEvent event) {
+        String header;
+        switch (event.getKind()) {
+            case PLACEMENT:
+                simpMessagingTemplate.convertAndSend("/topic/" + uuid,
+                        new StonePlacementIntent(event.getRow(), event.getColumn(), event.getNickname()));
+                return;
+            case JOIN:
+                header = "join-event";
+                break;
+            case PIE_RULE:
+                header = "pie-rule-event";
+                break;
+            case WIN:
+                header = "win-event";
+                break;
+            default:
+                return;
+        }
+        MessageHeaderAccessor accessor = new MessageHeaderAccessor();
+        accessor.setHeader(header, event.getNickname());
+        simpMessagingTemplate.convertAndSend("/topic/" + uuid, "", accessor.getMessageHeaders());
+    }
+
+    @EventListener
+    public void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        String destination = accessor.getDestination();
+        if (destination != null && destination.endsWith(BINARY_TOPIC_SUFFIX)
+                && binarySubscriptions.putIfAbsent(subscriptionKey(accessor), destination) == null) {
+            binarySubscribers.merge(destination, 1, Integer::sum);
+        }
+    }
+
+    @EventListener
+    public void onUnsubscribe(SessionUnsubscribeEvent event) {
+        removeBinarySubscription(subscriptionKey(SimpMessageHeaderAccessor.wrap(event.getMessage())));
+    }
+
+    @EventListener
+    public void onDisconnect(SessionDisconnectEvent event) {
+        String prefix = event.getSessionId() + ":";
+        binarySubscriptions.keySet().stream()
+                .filter(key -> key.startsWith(prefix))
+                .forEach(this::removeBinarySubscription);
+    }
+
+    private void removeBinarySubscription(String subscriptionKey) {
+        String destination = binarySubscriptions.remove(subscriptionKey);
+        if (destination != null) {
+            binarySubscribers.computeIfPresent(destination, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    private static String subscriptionKey(SimpMessageHeaderAccessor accessor) {
+        return accessor.getSessionId() + ":" + accessor.getSubscriptionId();
+    }
+}
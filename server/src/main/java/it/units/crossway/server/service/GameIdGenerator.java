@@ -0,0 +1,68 @@
+package it.units.crossway.server.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+// Game ids are 64-bit and time ordered: 41 bits of milliseconds since EPOCH_MILLIS, 10 bits of node and
+// 12 bits of sequence within the millisecond. Their textual form is base62, at most 11 characters long.
+@Component
+public class GameIdGenerator {
+
+    public static final long EPOCH_MILLIS = 1640995200000L;
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+    private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+    private static final int MAX_LENGTH = 11;
+
+    private final long node;
+    private long lastMillis = -1;
+    private long sequence;
+
+    public GameIdGenerator(@Value("${game-ids.node:0}") int node) {
+        if (node < 0 || node >= 1 << NODE_BITS) {
+            throw new IllegalArgumentException("The node must be between 0 and " + ((1 << NODE_BITS) - 1));
+        }
+        this.node = node;
+    }
+
+    public synchronized long nextId() {
+        long millis = Math.max(System.currentTimeMillis(), lastMillis);
+        if (millis == lastMillis) {
+            sequence = (sequence + 1) & MAX_SEQUENCE;
+            if (sequence == 0) {
+                millis++;
+            }
+        } else {
+            sequence = 0;
+        }
+        lastMillis = millis;
+        return (millis - EPOCH_MILLIS) << (NODE_BITS + SEQUENCE_BITS) | node << SEQUENCE_BITS | sequence;
+    }
+
+    public static String toBase62(long id) {
+        char[] digits = new char[MAX_LENGTH];
+        int start = MAX_LENGTH;
+        do {
+            digits[--start] = ALPHABET.charAt((int) (id % 62));
+            id /= 62;
+        } while (id > 0);
+        return new String(digits, start, MAX_LENGTH - start);
+    }
+
+    // returns -1 when the key is not a game id, e.g. a legacy uuid
+    public static long fromBase62(String key) {
+        if (key.isEmpty() || key.length() > MAX_LENGTH) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 0; i < key.length(); i++) {
+            int digit = ALPHABET.indexOf(key.charAt(i));
+            if (digit < 0 || id > (Long.MAX_VALUE - digit) / 62) {
+                return -1;
+            }
+            id = id * 62 + digit;
+        }
+        return id;
+    }
+}
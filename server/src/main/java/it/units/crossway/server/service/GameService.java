@@ -1,129 +1,233 @@
 package it.units.crossway.server.service;
 
+import it.units.crossway.core.GameEvent;
 import it.units.crossway.server.exception.GameException;
 import it.units.crossway.server.exception.GameNotFoundException;
+import it.units.crossway.server.model.LiveGame;
+import it.units.crossway.server.model.LobbyPage;
 import it.units.crossway.server.model.dto.GameCreationIntent;
 import it.units.crossway.server.model.dto.GameDto;
+import it.units.crossway.server.model.dto.GameStateDto;
+import it.units.crossway.server.model.dto.LobbyDelta;
 import it.units.crossway.server.model.dto.PlayerDto;
 import it.units.crossway.server.model.dto.StonePlacementIntent;
 import it.units.crossway.server.model.entity.Game;
 import it.units.crossway.server.model.entity.GameStatus;
-import it.units.crossway.server.repository.GameRepository;
-import it.units.crossway.server.repository.PlayerRepository;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
-import org.springframework.messaging.support.MessageHeaderAccessor;
 import org.springframework.stereotype.Service;
 
-import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Optional;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 @Service
 public class GameService {
 
-    private final GameRepository gameRepository;
-    private PlayerRepository playerRepository;
-    private PlayerService playerService;
+    public static final int MAX_LOBBY_PAGE_SIZE = 500;
+    public static final String LOBBY_TOPIC = "/topic/lobby";
+
+    private final LiveGameStore liveGameStore;
+    private final GameEventLanes gameEventLanes;
+    private final GameIdGenerator gameIdGenerator;
+    private final GameEventPublisher gameEventPublisher;
+    private final GameEventLog gameEventLog;
     private final SimpMessagingTemplate simpMessagingTemplate;
 
-    public GameService(GameRepository gameRepository, SimpMessagingTemplate simpMessagingTemplate) {
-        this.gameRepository = gameRepository;
+    public GameService(LiveGameStore liveGameStore, GameEventLanes gameEventLanes, GameIdGenerator gameIdGenerator,
+                       GameEventPublisher gameEventPublisher, GameEventLog gameEventLog,
+                       SimpMessagingTemplate simpMessagingTemplate) {
+        this.liveGameStore = liveGameStore;
+        this.gameEventLanes = gameEventLanes;
+        this.gameIdGenerator = gameIdGenerator;
+        this.gameEventPublisher = gameEventPublisher;
+        this.gameEventLog = gameEventLog;
         this.simpMessagingTemplate = simpMessagingTemplate;
     }
 
-    public GameDto getGameByUuid(String uuid) {
-        return new GameDto(gameRepository.findByUuid(uuid)
-                .orElseThrow(() -> new GameNotFoundException("Game with {uuid = " + uuid + "} not found")));
+    public GameDto getGameByUuid(String gameKey) {
+        return new GameDto(findGame(gameKey));
     }
 
-    public List<GameDto> getAllAvailableGames() {
-        return gameRepository.findAll().stream()
-                .filter(game -> game.getGameStatus().equals(GameStatus.CREATED))
-                .map(GameDto::new)
-                .collect(Collectors.toList());
+    // a client that knows the game up to a sequence only gets the events after it, one that knows nothing gets
+    // a snapshot of the board along with the whole history; a game that just ended is still read as finished,
+    // so a client that missed the WIN can catch up on it
+    public GameStateDto getGameState(String gameKey, Long since) {
+        Optional<LiveGame> liveGame = liveGameStore.find(gameKey);
+        if (liveGame.isPresent()) {
+            GameStateDto gameState = gameEventLanes.execute(liveGame.get().getUuid(),
+                    () -> liveGameStore.isLive(liveGame.get()) ? stateOf(liveGame.get(), since) : null);
+            if (gameState != null) {
+                return gameState;
+            }
+        }
+        return liveGameStore.findFinished(gameKey)
+                .map(finishedGame -> stateOf(finishedGame, since))
+                .orElseThrow(() -> new GameNotFoundException("Game with {id or uuid = " + gameKey + "} not found"));
     }
 
-    public GameDto createGame(GameCreationIntent intent) {
-        Game game = new Game();
-        game.setUuid(UUID.randomUUID().toString());
-        game.setBlackPlayerNickname(intent.getPlayerNickname());
-        game.setGameStatus(GameStatus.CREATED);
-        return new GameDto(gameRepository.save(game));
+    private GameStateDto stateOf(LiveGame liveGame, Long since) {
+        return since == null
+                ? new GameStateDto(liveGame, liveGame.getEventsSince(0), liveGame.getStonesSnapshot())
+                : new GameStateDto(liveGame, liveGame.getEventsSince(since), null);
     }
 
-    public GameDto handleJoiningEvent(String uuid, PlayerDto playerDto) {
-        Game gameToJoin = gameRepository.findByUuid(uuid)
-                .orElseThrow(() -> new GameException("The game does not exist"));
-        checkIfGameIsJoinable(gameToJoin);
-        gameToJoin.setWhitePlayerNickname(playerDto.getNickname());
-        gameToJoin.setGameStatus(GameStatus.IN_PROGRESS);
-        MessageHeaderAccessor accessor = new MessageHeaderAccessor();
-        accessor.setHeader("join-event", playerDto.getNickname());
-        simpMessagingTemplate.convertAndSend("/topic/" + gameToJoin.getUuid(), "", accessor.getMessageHeaders());
-        return new GameDto(gameRepository.save(gameToJoin));
+    public LobbyPage getAvailableGames(long cursor, int limit) {
+        if (limit < 1 || limit > MAX_LOBBY_PAGE_SIZE) {
+            throw new GameException("The limit must be between 1 and " + MAX_LOBBY_PAGE_SIZE);
+        }
+        return liveGameStore.findAvailableGames(cursor, limit);
     }
 
-    @Transactional
-    public void deleteGameByUuid(String uuid) {
-        if (!gameRepository.existsByUuid(uuid))
-            throw new GameNotFoundException("Game with {uuid = " + uuid + "} not found");
-        gameRepository.deleteByUuid(uuid);
+    // the lobby snapshot holds every open game, so it follows the cursors to the last page; every page moves
+    // the cursor forward, and a game written behind between two pages is only listed once
+    public List<LiveGame> getAllAvailableGames() {
+        Map<String, LiveGame> availableGames = new LinkedHashMap<>();
+        Long cursor = 0L;
+        while (cursor != null) {
+            LobbyPage lobbyPage = liveGameStore.findAvailableGames(cursor, MAX_LOBBY_PAGE_SIZE);
+            lobbyPage.getGames().forEach(liveGame -> availableGames.putIfAbsent(liveGame.getUuid(), liveGame));
+            cursor = lobbyPage.getNextCursor();
+        }
+        return new ArrayList<>(availableGames.values());
     }
 
-    private void checkIfGameIsJoinable(Game gameToJoin) {
-        if (gameToJoin.getGameStatus() != GameStatus.CREATED || gameToJoin.getWhitePlayerNickname() != null) {
-            throw new GameException("The game is not valid anymore");
-        }
+    public GameDto createGame(GameCreationIntent intent) {
+        checkIfBoardSizeIsValid(intent.getBoardSize());
+        LiveGame liveGame = new LiveGame(gameIdGenerator.nextId(), UUID.randomUUID().toString(),
+                intent.getPlayerNickname(), intent.getBoardSize());
+        gameEventLog.appendCreated(liveGame);
+        liveGameStore.save(liveGame);
+        GameDto gameDto = new GameDto(liveGame);
+        gameEventLanes.execute(liveGame.getUuid(), () -> publishLobbyDelta(LobbyDelta.Type.ADDED, gameDto));
+        return gameDto;
     }
 
-    public void handlePlacementEvent(String uuid, StonePlacementIntent stonePlacementIntent) {
-        validateStonePlacementIntent(uuid, stonePlacementIntent);
-        simpMessagingTemplate.convertAndSend("/topic/" + uuid, stonePlacementIntent);
+    // the join itself is a compare-and-set on the request thread, so concurrent losers fail fast without queueing;
+    // only the winner goes through the lane, where its sequence is recorded before the log append and broadcasts
+    public GameDto handleJoiningEvent(String gameKey, PlayerDto playerDto) {
+        LiveGame gameToJoin = findPlayableGame(gameKey);
+        gameToJoin.join(playerDto.getNickname());
+        liveGameStore.markDirty(gameToJoin.getUuid());
+        GameDto gameDto = new GameDto(gameToJoin);
+        gameEventLanes.execute(gameToJoin.getUuid(), () -> {
+            GameEvent join = gameToJoin.recordEvent(GameEvent.Kind.JOIN, playerDto.getNickname(), 0, 0);
+            gameEventLog.appendEvent(gameToJoin.getUuid(), join, 0);
+            gameEventPublisher.publish(gameToJoin, join);
+            publishLobbyDelta(LobbyDelta.Type.REMOVED, gameDto);
+        });
+        return gameDto;
     }
 
-    public void handlePieRuleEvent(String uuid, PlayerDto playerDto) {
-        MessageHeaderAccessor accessor = new MessageHeaderAccessor();
-        accessor.setHeader("pie-rule-event", playerDto.getNickname());
-        simpMessagingTemplate.convertAndSend("/topic/" + uuid, "", accessor.getMessageHeaders());
+    // events are always laned by uuid, so the same game reached through its id or its uuid shares one lane
+    public void deleteGameByUuid(String gameKey) {
+        LiveGame liveGame = findGame(gameKey);
+        String uuid = liveGame.getUuid();
+        gameEventLanes.execute(uuid, () -> {
+            if (!liveGameStore.isLive(liveGame)) {
+                throw new GameNotFoundException("Game with {id or uuid = " + gameKey + "} not found");
+            }
+            liveGameStore.delete(uuid);
+            gameEventLog.appendFinished(uuid);
+            if (liveGame.getGameStatus() == GameStatus.CREATED) {
+                publishLobbyDelta(LobbyDelta.Type.REMOVED, new GameDto(liveGame));
+            }
+        });
     }
 
-    private void validateStonePlacementIntent(String uuid, StonePlacementIntent stonePlacementIntent) {
-        String nickname = stonePlacementIntent.getNickname();
-        Game game = gameRepository.findByUuid(uuid)
-                .orElseThrow(() -> new GameException("The game does not exist"));
-        checkIfGameIsInProgress(game);
-        checkIfNicknameExists(nickname);
-        checkIfNicknameBelongsToGame(nickname, game);
+    // games are resolved, reading through to the database if needed, before their event is queued, so the
+    // lanes only ever check in memory that the game was not deleted in the meantime
+    private LiveGame findGame(String gameKey) {
+        return liveGameStore.find(gameKey)
+                .orElseThrow(() -> new GameNotFoundException("Game with {id or uuid = " + gameKey + "} not found"));
     }
 
-    private void checkIfGameIsInProgress(Game game) {
-        if (game.getGameStatus() != GameStatus.IN_PROGRESS) {
-            throw new GameException("The game is ended");
+    // lobby deltas of a game are published from its lane, so a REMOVED can never overtake its ADDED
+    private void publishLobbyDelta(LobbyDelta.Type type, GameDto gameDto) {
+        simpMessagingTemplate.convertAndSend(LOBBY_TOPIC, new LobbyDelta(type, gameDto));
+    }
+
+    private void checkIfBoardSizeIsValid(int boardSize) {
+        if (boardSize < Game.MIN_BOARD_SIZE || boardSize > Game.MAX_BOARD_SIZE) {
+            throw new GameException("The board size must be between " + Game.MIN_BOARD_SIZE + " and " + Game.MAX_BOARD_SIZE);
         }
     }
 
-    private void checkIfNicknameExists(String nickname) {
-        if (!playerRepository.existsByNickname(nickname)) {
-            throw new GameException("The player with {nickname = " + nickname + "} does not exist");
+    // a submission with an idempotency key that was already accepted is dropped without a broadcast, so
+    // clients can retry freely; submissions without a key are always applied
+    public void handlePlacementEvent(String gameKey, StonePlacementIntent stonePlacementIntent, Long idempotencyKey) {
+        LiveGame liveGame = findPlayableGame(gameKey);
+        gameEventLanes.execute(liveGame.getUuid(), () -> placeStone(liveGame, stonePlacementIntent, idempotencyKey));
+    }
+
+    private void placeStone(LiveGame liveGame, StonePlacementIntent stonePlacementIntent, Long idempotencyKey) {
+        requireLive(liveGame);
+        String uuid = liveGame.getUuid();
+        String nickname = stonePlacementIntent.getNickname();
+        if (idempotencyKey != null && !liveGame.isFreshIdempotencyKey(nickname, idempotencyKey)) {
+            return;
+        }
+        boolean isWinningPlacement = liveGame.placeStone(
+                stonePlacementIntent.getNickname(),
+                stonePlacementIntent.getRow(),
+                stonePlacementIntent.getColumn()
+        );
+        if (idempotencyKey != null) {
+            liveGame.acceptIdempotencyKey(nickname, idempotencyKey);
         }
+        GameEvent placement = liveGame.recordEvent(GameEvent.Kind.PLACEMENT, stonePlacementIntent.getNickname(),
+                stonePlacementIntent.getRow(), stonePlacementIntent.getColumn());
+        gameEventLog.appendEvent(uuid, placement, idempotencyKey == null ? 0 : idempotencyKey);
+        if (isWinningPlacement) {
+            handleWinEvent(liveGame, placement);
+        } else {
+            gameEventPublisher.publish(liveGame, placement);
+        }
+    }
+
+    public void handlePieRuleEvent(String gameKey, PlayerDto playerDto, Long idempotencyKey) {
+        LiveGame liveGame = findPlayableGame(gameKey);
+        gameEventLanes.execute(liveGame.getUuid(), () -> claimPieRule(liveGame, playerDto, idempotencyKey));
     }
 
-    private void checkIfNicknameBelongsToGame(String nickname, Game game) {
-        if (!Objects.equals(game.getWhitePlayerNickname(), nickname) && !Objects.equals(game.getBlackPlayerNickname(), nickname)) {
-            throw new GameException("The player with {nickname = " + nickname + "} does belong to this game");
+    private void claimPieRule(LiveGame liveGame, PlayerDto playerDto, Long idempotencyKey) {
+        requireLive(liveGame);
+        String uuid = liveGame.getUuid();
+        String nickname = playerDto.getNickname();
+        if (idempotencyKey != null && !liveGame.isFreshIdempotencyKey(nickname, idempotencyKey)) {
+            return;
         }
+        if (!liveGame.applyPieRule(nickname)) {
+            throw new GameException("The player with {nickname = " + nickname + "} cannot claim the pie rule");
+        }
+        liveGameStore.markDirty(uuid);
+        if (idempotencyKey != null) {
+            liveGame.acceptIdempotencyKey(nickname, idempotencyKey);
+        }
+        GameEvent pieRule = liveGame.recordEvent(GameEvent.Kind.PIE_RULE, nickname, 0, 0);
+        gameEventLog.appendEvent(uuid, pieRule, idempotencyKey == null ? 0 : idempotencyKey);
+        gameEventPublisher.publish(liveGame, pieRule);
+    }
+
+    private LiveGame findPlayableGame(String gameKey) {
+        return liveGameStore.find(gameKey)
+                .orElseThrow(() -> new GameException("The game does not exist"));
     }
 
-    @Autowired
-    public void setPlayerRepository(PlayerRepository playerRepository) {
-        this.playerRepository = playerRepository;
+    private void requireLive(LiveGame liveGame) {
+        if (!liveGameStore.isLive(liveGame)) {
+            throw new GameException("The game does not exist");
+        }
     }
 
-    @Autowired
-    public void setPlayerService(PlayerService playerService) {
-        this.playerService = playerService;
+    // the winning placement and the win share one frame
+    private void handleWinEvent(LiveGame liveGame, GameEvent placement) {
+        GameEvent win = liveGame.recordEvent(GameEvent.Kind.WIN, placement.getNickname(), 0, 0);
+        gameEventLog.appendEvent(liveGame.getUuid(), win, 0);
+        gameEventPublisher.publish(liveGame, placement, win);
+        liveGameStore.delete(liveGame.getUuid());
+        gameEventLog.appendFinished(liveGame.getUuid());
     }
 }
@@ -0,0 +1,291 @@
+package it.units.crossway.server.service;
+
+import it.units.crossway.server.model.LiveGame;
+import it.units.crossway.server.model.LobbyPage;
+import it.units.crossway.server.model.entity.Game;
+import it.units.crossway.server.model.entity.GameStatus;
+import it.units.crossway.server.repository.GameRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Live games are authoritative in memory; the database only receives their durable state, written behind
+// in batches. Deleted games leave a tombstone until the delete is flushed, so a read-through cannot revive them.
+// The games recovered from the event log are stored again on startup, before the writer starts. Finished and
+// deleted games stay readable for a grace period, so a client that missed their last events can still catch up.
+@Component
+public class LiveGameStore {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveGameStore.class);
+
+    private final GameRepository gameRepository;
+    private final GameEventLog gameEventLog;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, LiveGame> liveGames = new ConcurrentHashMap<>();
+    private final Map<Long, LiveGame> liveGamesById = new ConcurrentHashMap<>();
+    private final Set<String> tombstones = ConcurrentHashMap.newKeySet();
+    private final Set<String> pendingWrites = ConcurrentHashMap.newKeySet();
+    // games never written yet, by game id, so the lobby pages them along the same cursor as the persisted ones
+    private final ConcurrentNavigableMap<Long, LiveGame> unpersistedGames = new ConcurrentSkipListMap<>();
+    private final Map<String, LiveGame> finishedGames = new ConcurrentHashMap<>();
+    private final Map<Long, LiveGame> finishedGamesById = new ConcurrentHashMap<>();
+    // in the order the games finished, which is also the order their grace periods end
+    private final Queue<FinishedGame> finishedGameExpiries = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "live-game-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    @Value("${write-behind.flush-interval-ms:100}")
+    private long flushIntervalMs;
+    @Value("${write-behind.batch-size:256}")
+    private int batchSize;
+    @Value("${live-games.finished-grace-ms:60000}")
+    private long finishedGraceMs;
+
+    public LiveGameStore(GameRepository gameRepository, GameEventLog gameEventLog,
+                         PlatformTransactionManager transactionManager) {
+        this.gameRepository = gameRepository;
+        this.gameEventLog = gameEventLog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    void startWriter() {
+        gameEventLog.getRecoveredGames().forEach(this::save);
+        writer.scheduleWithFixedDelay(this::flush, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+        writer.scheduleWithFixedDelay(this::evictFinishedGames, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopWriter() throws InterruptedException {
+        writer.shutdown();
+        writer.awaitTermination(flushIntervalMs * 10, TimeUnit.MILLISECONDS);
+        flush();
+    }
+
+    // a game is found by its compact id or, for the clients that still use it, by its uuid
+    public Optional<LiveGame> find(String key) {
+        long id = GameIdGenerator.fromBase62(key);
+        return id > 0 ? findById(id) : findByUuid(key);
+    }
+
+    // never reads through: a game resolved with find stays live until it is deleted
+    public boolean isLive(LiveGame liveGame) {
+        return liveGames.get(liveGame.getUuid()) == liveGame;
+    }
+
+    // finished games are never mutated again, so they can be read without their lane
+    public Optional<LiveGame> findFinished(String key) {
+        long id = GameIdGenerator.fromBase62(key);
+        return Optional.ofNullable(id > 0 ? finishedGamesById.get(id) : finishedGames.get(key));
+    }
+
+    private Optional<LiveGame> findById(long id) {
+        LiveGame liveGame = liveGamesById.get(id);
+        if (liveGame != null) {
+            if (liveGames.get(liveGame.getUuid()) == liveGame) {
+                return Optional.of(liveGame);
+            }
+            liveGamesById.remove(id, liveGame);
+        }
+        return gameRepository.findByGameId(id)
+                .flatMap(game -> findByUuid(game.getUuid()));
+    }
+
+    private Optional<LiveGame> findByUuid(String uuid) {
+        LiveGame liveGame = liveGames.get(uuid);
+        if (liveGame != null || tombstones.contains(uuid)) {
+            return Optional.ofNullable(liveGame);
+        }
+        return gameRepository.findByUuid(uuid)
+                .filter(game -> !tombstones.contains(uuid))
+                .map(game -> liveGames.computeIfAbsent(uuid, key -> indexById(new LiveGame(game))));
+    }
+
+    private LiveGame indexById(LiveGame liveGame) {
+        if (liveGame.getId() != 0) {
+            liveGamesById.put(liveGame.getId(), liveGame);
+        }
+        return liveGame;
+    }
+
+    public void save(LiveGame liveGame) {
+        liveGames.put(liveGame.getUuid(), indexById(liveGame));
+        if (liveGame.getId() != 0) {
+            unpersistedGames.put(liveGame.getId(), liveGame);
+        }
+        markDirty(liveGame.getUuid());
+    }
+
+    public void markDirty(String uuid) {
+        pendingWrites.add(uuid);
+    }
+
+    public boolean delete(String key) {
+        Optional<LiveGame> liveGame = find(key);
+        if (liveGame.isEmpty()) {
+            return false;
+        }
+        String uuid = liveGame.get().getUuid();
+        finish(liveGame.get());
+        tombstones.add(uuid);
+        liveGames.remove(uuid);
+        liveGamesById.remove(liveGame.get().getId());
+        unpersistedGames.remove(liveGame.get().getId(), liveGame.get());
+        markDirty(uuid);
+        return true;
+    }
+
+    // the game becomes readable as finished before it stops being live, so a reader never misses it in between
+    private void finish(LiveGame liveGame) {
+        finishedGames.put(liveGame.getUuid(), liveGame);
+        if (liveGame.getId() != 0) {
+            finishedGamesById.put(liveGame.getId(), liveGame);
+        }
+        finishedGameExpiries.add(new FinishedGame(liveGame, System.currentTimeMillis() + finishedGraceMs));
+    }
+
+    void evictFinishedGames() {
+        long now = System.currentTimeMillis();
+        FinishedGame finishedGame;
+        while ((finishedGame = finishedGameExpiries.peek()) != null && finishedGame.expiresAt <= now) {
+            finishedGameExpiries.poll();
+            LiveGame liveGame = finishedGame.liveGame;
+            finishedGames.remove(liveGame.getUuid(), liveGame);
+            finishedGamesById.remove(liveGame.getId(), liveGame);
+        }
+    }
+
+    // pages through the (gameStatus, gameId) index and the unwritten games in one merge by game id, so both
+    // sources move the same cursor forward and the cost depends on the page size only. When the database fills
+    // the page, unwritten games past its last row wait for the next page, so no row is skipped; a game written
+    // while the page is built shows up in both sources and is listed once
+    public LobbyPage findAvailableGames(long cursor, int limit) {
+        List<Game> rows = gameRepository.findByGameStatusAndGameIdGreaterThanOrderByGameIdAsc(
+                GameStatus.CREATED, cursor, PageRequest.of(0, limit));
+        boolean rowsFillPage = rows.size() == limit;
+        Iterator<LiveGame> unpersisted = (rowsFillPage
+                ? unpersistedGames.subMap(cursor, false, rows.get(rows.size() - 1).getGameId(), true)
+                : unpersistedGames.tailMap(cursor, false)).values().iterator();
+        Iterator<Game> persisted = rows.iterator();
+        LiveGame nextUnpersisted = next(unpersisted);
+        Game nextPersisted = next(persisted);
+        List<LiveGame> games = new ArrayList<>(limit);
+        long lastCursor = cursor;
+        while (games.size() < limit && (nextUnpersisted != null || nextPersisted != null)) {
+            LiveGame candidate;
+            if (nextPersisted == null || nextUnpersisted != null && nextUnpersisted.getId() <= nextPersisted.getGameId()) {
+                lastCursor = nextUnpersisted.getId();
+                if (nextPersisted != null && nextPersisted.getGameId() == lastCursor) {
+                    nextPersisted = next(persisted);
+                }
+                candidate = liveGames.get(nextUnpersisted.getUuid()) == nextUnpersisted ? nextUnpersisted : null;
+                nextUnpersisted = next(unpersisted);
+            } else {
+                lastCursor = nextPersisted.getGameId();
+                candidate = availableGameOf(nextPersisted);
+                nextPersisted = next(persisted);
+            }
+            if (candidate != null && candidate.getGameStatus() == GameStatus.CREATED) {
+                games.add(candidate);
+            }
+        }
+        boolean hasMore = rowsFillPage || nextUnpersisted != null || nextPersisted != null;
+        return new LobbyPage(games, hasMore ? lastCursor : null);
+    }
+
+    private static <T> T next(Iterator<T> iterator) {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private LiveGame availableGameOf(Game row) {
+        if (tombstones.contains(row.getUuid())) {
+            return null;
+        }
+        LiveGame liveGame = liveGames.get(row.getUuid());
+        return liveGame != null ? liveGame : new LiveGame(row);
+    }
+
+    public int getPendingWriteCount() {
+        return pendingWrites.size();
+    }
+
+    synchronized void flush() {
+        while (!pendingWrites.isEmpty()) {
+            List<String> batch = new ArrayList<>(batchSize);
+            Iterator<String> iterator = pendingWrites.iterator();
+            while (iterator.hasNext() && batch.size() < batchSize) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            try {
+                writeBatch(batch);
+            } catch (RuntimeException e) {
+                pendingWrites.addAll(batch);
+                log.warn("Could not write {} games behind, retrying on the next flush", batch.size(), e);
+                return;
+            }
+        }
+    }
+
+    private void writeBatch(List<String> uuids) {
+        List<String> deletedUuids = new ArrayList<>();
+        List<LiveGame> savedGames = new ArrayList<>();
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, Game> persistedGames = gameRepository.findAllByUuidIn(uuids).stream()
+                    .collect(Collectors.toMap(Game::getUuid, Function.identity(), (first, second) -> first));
+            List<Game> gamesToSave = new ArrayList<>();
+            List<Game> gamesToDelete = new ArrayList<>();
+            for (String uuid : uuids) {
+                LiveGame liveGame = liveGames.get(uuid);
+                Game game = persistedGames.get(uuid);
+                if (liveGame == null) {
+                    deletedUuids.add(uuid);
+                    if (game != null) {
+                        gamesToDelete.add(game);
+                    }
+                    continue;
+                }
+                if (game == null) {
+                    game = new Game();
+                }
+                liveGame.copyTo(game);
+                gamesToSave.add(game);
+                savedGames.add(liveGame);
+            }
+            gameRepository.deleteAll(gamesToDelete);
+            gameRepository.saveAll(gamesToSave);
+        });
+        deletedUuids.forEach(tombstones::remove);
+        savedGames.forEach(liveGame -> unpersistedGames.remove(liveGame.getId(), liveGame));
+    }
+
+    private static final class FinishedGame {
+
+        private final LiveGame liveGame;
+        private final long expiresAt;
+
+        private FinishedGame(LiveGame liveGame, long expiresAt) {
+            this.liveGame = liveGame;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package it.units.crossway.server.service;
+
+import it.units.crossway.server.repository.PlayerRepository;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// The authoritative set of nicknames, loaded once from the database at startup and then written through to
+// it by PlayerService, so lookups never leave memory. Each nickname lives under the version of its
+// registration, so a rollback only drops its own registration and never one made after a delete.
+@Component
+public class NicknameRegistry {
+
+    private final Map<String, Long> registrations = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final PlayerRepository playerRepository;
+
+    public NicknameRegistry(PlayerRepository playerRepository) {
+        this.playerRepository = playerRepository;
+    }
+
+    @PostConstruct
+    public void load() {
+        playerRepository.findAllNicknames().forEach(this::register);
+    }
+
+    // returns the version of the registration, or 0 when the nickname is already registered
+    public long register(String nickname) {
+        long version = versions.incrementAndGet();
+        return registrations.putIfAbsent(nickname, version) == null ? version : 0;
+    }
+
+    public boolean unregister(String nickname) {
+        return registrations.remove(nickname) != null;
+    }
+
+    public boolean unregister(String nickname, long version) {
+        return registrations.remove(nickname, version);
+    }
+
+    public boolean contains(String nickname) {
+        return registrations.containsKey(nickname);
+    }
+}
@@ -5,37 +5,52 @@ import it.units.crossway.server.exception.PlayerNotFoundException;
 import it.units.crossway.server.model.dto.PlayerDto;
 import it.units.crossway.server.model.entity.Player;
 import it.units.crossway.server.repository.PlayerRepository;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
-import javax.transaction.Transactional;
-
 @Service
 public class PlayerService {
 
     private final PlayerRepository playerRepository;
+    private final NicknameRegistry nicknameRegistry;
 
-    public PlayerService(PlayerRepository playerRepository) {
+    public PlayerService(PlayerRepository playerRepository, NicknameRegistry nicknameRegistry) {
         this.playerRepository = playerRepository;
+        this.nicknameRegistry = nicknameRegistry;
     }
 
+    // the registry settles concurrent registrations in memory and the database only makes them durable;
+    // a failed write rolls back exactly the registration it was made for
     public PlayerDto addPlayer(PlayerDto playerDto) {
-        if (playerRepository.existsByNickname(playerDto.getNickname())) {
-            throw new DuplicatePlayerException("nickname", playerDto.getNickname());
+        String nickname = playerDto.getNickname();
+        long version = nicknameRegistry.register(nickname);
+        if (version == 0) {
+            throw new DuplicatePlayerException("nickname", nickname);
+        }
+        try {
+            Player saved = playerRepository.saveAndFlush(new Player(nickname));
+            return new PlayerDto(saved.getNickname());
+        } catch (DataIntegrityViolationException e) {
+            nicknameRegistry.unregister(nickname, version);
+            throw new DuplicatePlayerException("nickname", nickname);
+        } catch (RuntimeException e) {
+            nicknameRegistry.unregister(nickname, version);
+            throw e;
         }
-        Player saved = playerRepository.save(new Player(playerDto.getNickname()));
-        return new PlayerDto(saved.getNickname());
     }
 
-    @Transactional
     public void deletePlayerByNickname(String nickname) {
-        if (!playerRepository.existsByNickname(nickname)) {
+        boolean wasRegistered = nicknameRegistry.unregister(nickname);
+        if (playerRepository.deleteByNickname(nickname) == 0 && !wasRegistered) {
             throw new PlayerNotFoundException("Player with {nickname = " + nickname + "} not found");
         }
-        playerRepository.deleteByNickname(nickname);
     }
 
     public PlayerDto getPlayerByNickname(String nickname) {
-        return new PlayerDto(playerRepository.findByNickname(nickname).orElseThrow(() -> new PlayerNotFoundException("Player with {nickname = " + nickname + "} not found")));
+        if (!nicknameRegistry.contains(nickname)) {
+            throw new PlayerNotFoundException("Player with {nickname = " + nickname + "} not found");
+        }
+        return new PlayerDto(nickname);
     }
 
 }
@@ -0,0 +1,118 @@
+package it.units.crossway.server;
+
+import it.units.crossway.core.GameEvent;
+import it.units.crossway.server.model.LiveGame;
+import it.units.crossway.server.model.entity.Game;
+import it.units.crossway.server.model.entity.GameStatus;
+import it.units.crossway.server.service.GameEventLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GameEventLogTests {
+
+    @Test
+    void given_loggedGameInProgress_when_eventLogIsReopened_should_recoverIt(@TempDir Path directory) throws Exception {
+        GameEventLog gameEventLog = new GameEventLog(directory.toString(), 4096, 10, 1000);
+        gameEventLog.open();
+        LiveGame liveGame = new LiveGame(42, UUID.randomUUID().toString(), "blackP", Game.MIN_BOARD_SIZE);
+        gameEventLog.appendCreated(liveGame);
+        liveGame.join("whiteP");
+        gameEventLog.appendEvent(liveGame.getUuid(), liveGame.recordEvent(GameEvent.Kind.JOIN, "whiteP", 0, 0), 0);
+        liveGame.placeStone("blackP", 1, 1);
+        gameEventLog.appendEvent(liveGame.getUuid(),
+                liveGame.recordEvent(GameEvent.Kind.PLACEMENT, "blackP", 1, 1), 3);
+        gameEventLog.close();
+        GameEventLog reopenedGameEventLog = new GameEventLog(directory.toString(), 4096, 10, 1000);
+        reopenedGameEventLog.open();
+        assertEquals(1, reopenedGameEventLog.getRecoveredGames().size());
+        LiveGame recoveredGame = reopenedGameEventLog.getRecoveredGames().get(0);
+        assertEquals(42, recoveredGame.getId());
+        assertEquals("whiteP", recoveredGame.getWhitePlayerNickname());
+        assertEquals(GameStatus.IN_PROGRESS, recoveredGame.getGameStatus());
+        assertEquals(liveGame.getEventsSince(0), recoveredGame.getEventsSince(0));
+        assertEquals(liveGame.getStonesSnapshot(), recoveredGame.getStonesSnapshot());
+        assertFalse(recoveredGame.isFreshIdempotencyKey("blackP", 3));
+        reopenedGameEventLog.close();
+    }
+
+    @Test
+    void given_loggedPieRule_when_eventLogIsReopened_should_recoverSwappedSeatsAndKeys(@TempDir Path directory) throws Exception {
+        GameEventLog gameEventLog = new GameEventLog(directory.toString(), 4096, 10, 1000);
+        gameEventLog.open();
+        LiveGame liveGame = new LiveGame(7, UUID.randomUUID().toString(), "blackP", Game.MIN_BOARD_SIZE);
+        gameEventLog.appendCreated(liveGame);
+        liveGame.join("whiteP");
+        gameEventLog.appendEvent(liveGame.getUuid(), liveGame.recordEvent(GameEvent.Kind.JOIN, "whiteP", 0, 0), 0);
+        liveGame.placeStone("blackP", 1, 1);
+        gameEventLog.appendEvent(liveGame.getUuid(),
+                liveGame.recordEvent(GameEvent.Kind.PLACEMENT, "blackP", 1, 1), 0);
+        assertTrue(liveGame.applyPieRule("whiteP"));
+        liveGame.acceptIdempotencyKey("whiteP", 5);
+        gameEventLog.appendEvent(liveGame.getUuid(),
+                liveGame.recordEvent(GameEvent.Kind.PIE_RULE, "whiteP", 0, 0), 5);
+        gameEventLog.close();
+        GameEventLog reopenedGameEventLog = new GameEventLog(directory.toString(), 4096, 10, 1000);
+        reopenedGameEventLog.open();
+        LiveGame recoveredGame = reopenedGameEventLog.getRecoveredGames().get(0);
+        assertEquals("whiteP", recoveredGame.getBlackPlayerNickname());
+        assertEquals("blackP", recoveredGame.getWhitePlayerNickname());
+        assertFalse(recoveredGame.isFreshIdempotencyKey("whiteP", 5));
+        assertTrue(recoveredGame.isFreshIdempotencyKey("blackP", 1));
+        assertEquals(liveGame.getEventsSince(0), recoveredGame.getEventsSince(0));
+        reopenedGameEventLog.close();
+    }
+
+    @Test
+    void given_finishedGames_when_eventLogIsCompacted_should_dropTheirSegments(@TempDir Path directory) throws Exception {
+        GameEventLog gameEventLog = new GameEventLog(directory.toString(), 256, 10, 60_000);
+        gameEventLog.open();
+        for (int i = 0; i < 10; i++) {
+            LiveGame liveGame = new LiveGame(i + 1, UUID.randomUUID().toString(), "blackP" + i, Game.MIN_BOARD_SIZE);
+            gameEventLog.appendCreated(liveGame);
+            gameEventLog.appendFinished(liveGame.getUuid());
+        }
+        assertTrue(countFiles(directory) > 1);
+        gameEventLog.compact();
+        assertEquals(1, countFiles(directory));
+        gameEventLog.close();
+        GameEventLog reopenedGameEventLog = new GameEventLog(directory.toString(), 256, 10, 60_000);
+        reopenedGameEventLog.open();
+        assertTrue(reopenedGameEventLog.getRecoveredGames().isEmpty());
+        reopenedGameEventLog.close();
+    }
+
+    @Test
+    void given_restartsWithoutEvents_when_eventLogIsCompacted_should_dropTheirEmptySegments(@TempDir Path directory) throws Exception {
+        GameEventLog gameEventLog = new GameEventLog(directory.toString(), 4096, 10, 60_000);
+        gameEventLog.open();
+        gameEventLog.appendCreated(new LiveGame(1, UUID.randomUUID().toString(), "blackP", Game.MIN_BOARD_SIZE));
+        gameEventLog.close();
+        for (int i = 0; i < 3; i++) {
+            GameEventLog restartedGameEventLog = new GameEventLog(directory.toString(), 4096, 10, 60_000);
+            restartedGameEventLog.open();
+            restartedGameEventLog.close();
+        }
+        GameEventLog reopenedGameEventLog = new GameEventLog(directory.toString(), 4096, 10, 60_000);
+        reopenedGameEventLog.open();
+        reopenedGameEventLog.compact();
+        // the segment of the live game and the active one
+        assertEquals(2, countFiles(directory));
+        assertEquals(1, reopenedGameEventLog.getRecoveredGames().size());
+        reopenedGameEventLog.close();
+    }
+
+    private long countFiles(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+}
@@ -1,29 +1,48 @@
 package it.units.crossway.server;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import it.units.crossway.server.controller.GameController;
+import it.units.crossway.server.exception.GameException;
+import it.units.crossway.server.model.LiveGame;
 import it.units.crossway.server.model.dto.GameCreationIntent;
 import it.units.crossway.server.model.dto.PlayerDto;
+import it.units.crossway.server.model.dto.StonePlacementIntent;
 import it.units.crossway.server.model.entity.Game;
 import it.units.crossway.server.model.entity.GameStatus;
 import it.units.crossway.server.model.entity.Player;
 import it.units.crossway.server.repository.GameRepository;
 import it.units.crossway.server.repository.PlayerRepository;
+import it.units.crossway.server.service.GameIdGenerator;
+import it.units.crossway.server.service.GameService;
+import it.units.crossway.server.service.NicknameRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
-@SpringBootTest
+@SpringBootTest(properties = "event-log.dir=build/event-log/${random.uuid}")
 @AutoConfigureMockMvc
 public class IntegrationTests {
 
@@ -33,6 +52,12 @@ public class IntegrationTests {
     private GameRepository gameRepository;
     @Autowired
     private PlayerRepository playerRepository;
+    @Autowired
+    private GameService gameService;
+    @Autowired
+    private NicknameRegistry nicknameRegistry;
+    @Autowired
+    private GameIdGenerator gameIdGenerator;
 
     @Test
     void when_postPlayer_should_saveInDb() throws Exception {
@@ -69,6 +94,27 @@ public class IntegrationTests {
                 .andExpect(jsonPath("$.blackPlayerNickname", is("player1")));
     }
 
+    @Test
+    void when_postGameCreationIntentWithBoardSize_should_createNewGameWithThatBoardSize() throws Exception {
+        GameCreationIntent gameCreationIntent = new GameCreationIntent("player1", 11);
+        ObjectMapper om = new ObjectMapper();
+        mvc.perform(post("/games")
+                        .content(om.writeValueAsString(gameCreationIntent))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.boardSize", is(11)));
+    }
+
+    @Test
+    void given_outOfRangeBoardSize_when_postGameCreationIntent_then_400() throws Exception {
+        GameCreationIntent gameCreationIntent = new GameCreationIntent("player1", Game.MAX_BOARD_SIZE + 1);
+        ObjectMapper om = new ObjectMapper();
+        mvc.perform(post("/games")
+                        .content(om.writeValueAsString(gameCreationIntent))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void given_previouslyCreatedGame_when_postGameJoiningIntent_should_setWhitePlayer() throws Exception {
         Game game = new Game();
@@ -99,10 +145,143 @@ public class IntegrationTests {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void given_inProgressGame_when_whitePlacesBeforeBlack_then_400() throws Exception {
+        String uuid = saveInProgressGame(Game.MIN_BOARD_SIZE);
+        ObjectMapper om = new ObjectMapper();
+        mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                        .content(om.writeValueAsString(new StonePlacementIntent(1, 1, "whiteP")))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void given_inProgressGame_when_placementIsRetriedWithSameIdempotencyKey_should_placeStoneOnce() throws Exception {
+        String uuid = saveInProgressGame(Game.MIN_BOARD_SIZE);
+        ObjectMapper om = new ObjectMapper();
+        String blackPlacement = om.writeValueAsString(new StonePlacementIntent(1, 1, "blackP"));
+        for (int attempt = 0; attempt < 2; attempt++) {
+            mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                            .header(GameController.IDEMPOTENCY_KEY_HEADER, 7)
+                            .content(blackPlacement)
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk());
+        }
+        mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                        .header(GameController.IDEMPOTENCY_KEY_HEADER, 6)
+                        .content(om.writeValueAsString(new StonePlacementIntent(2, 2, "blackP")))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                        .header(GameController.IDEMPOTENCY_KEY_HEADER, 1)
+                        .content(om.writeValueAsString(new StonePlacementIntent(5, 5, "whiteP")))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                        .content(om.writeValueAsString(new StonePlacementIntent(2, 2, "blackP")))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void given_inProgressGame_when_getGameStateSinceSequence_should_returnOnlyLaterEvents() throws Exception {
+        String uuid = saveInProgressGame(Game.MIN_BOARD_SIZE);
+        ObjectMapper om = new ObjectMapper();
+        mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                        .content(om.writeValueAsString(new StonePlacementIntent(1, 1, "blackP")))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                        .content(om.writeValueAsString(new StonePlacementIntent(1, 2, "whiteP")))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mvc.perform(get("/games/{uuid}/state", uuid).param("since", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.sequence", is(2)))
+                .andExpect(jsonPath("$.events", hasSize(1)))
+                .andExpect(jsonPath("$.events[0].sequence", is(2)))
+                .andExpect(jsonPath("$.events[0].nickname", is("whiteP")))
+                .andExpect(jsonPath("$.stones", nullValue()));
+        mvc.perform(get("/games/{uuid}/state", uuid))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events", hasSize(2)))
+                .andExpect(jsonPath("$.stones", startsWith("BW.")));
+        mvc.perform(get("/games/{uuid}/state", uuid).param("since", "3"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void given_inProgressGame_when_blackConnectsFirstAndLastRow_should_endAndDeleteGame() throws Exception {
+        String uuid = saveInProgressGame(Game.MIN_BOARD_SIZE);
+        ObjectMapper om = new ObjectMapper();
+        for (int row = 1; row <= Game.MIN_BOARD_SIZE; row++) {
+            mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                            .content(om.writeValueAsString(new StonePlacementIntent(row, 1, "blackP")))
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk());
+            if (row < Game.MIN_BOARD_SIZE) {
+                mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                                .content(om.writeValueAsString(new StonePlacementIntent(row, Game.MIN_BOARD_SIZE, "whiteP")))
+                                .contentType(MediaType.APPLICATION_JSON))
+                        .andExpect(status().isOk());
+            }
+        }
+        mvc.perform(get("/games/{uuid}", uuid))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void given_missedWin_when_getGameStateSinceSequence_should_returnTheWinningEvents() throws Exception {
+        String uuid = saveInProgressGame(Game.MIN_BOARD_SIZE);
+        ObjectMapper om = new ObjectMapper();
+        for (int row = 1; row <= Game.MIN_BOARD_SIZE; row++) {
+            mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                            .content(om.writeValueAsString(new StonePlacementIntent(row, 1, "blackP")))
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk());
+            if (row < Game.MIN_BOARD_SIZE) {
+                mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                                .content(om.writeValueAsString(new StonePlacementIntent(row, Game.MIN_BOARD_SIZE, "whiteP")))
+                                .contentType(MediaType.APPLICATION_JSON))
+                        .andExpect(status().isOk());
+            }
+        }
+        // the client last saw the white placement before the winning one
+        long lastSeenSequence = 2L * Game.MIN_BOARD_SIZE - 2;
+        mvc.perform(get("/games/{uuid}/state", uuid).param("since", String.valueOf(lastSeenSequence)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.events", hasSize(2)))
+                .andExpect(jsonPath("$.events[0].kind", is("PLACEMENT")))
+                .andExpect(jsonPath("$.events[0].row", is(Game.MIN_BOARD_SIZE)))
+                .andExpect(jsonPath("$.events[1].kind", is("WIN")))
+                .andExpect(jsonPath("$.events[1].nickname", is("blackP")));
+        mvc.perform(get("/games/{uuid}", uuid))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void when_postGameCreationIntent_should_writeGameBehindToDb() throws Exception {
+        GameCreationIntent gameCreationIntent = new GameCreationIntent("player1");
+        ObjectMapper om = new ObjectMapper();
+        String response = mvc.perform(post("/games")
+                        .content(om.writeValueAsString(gameCreationIntent))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String uuid = om.readTree(response).get("uuid").asText();
+        for (int attempt = 0; attempt < 50 && gameRepository.findByUuid(uuid).isEmpty(); attempt++) {
+            Thread.sleep(100);
+        }
+        assertTrue(gameRepository.findByUuid(uuid).isPresent());
+        mvc.perform(delete("/games/{uuid}", uuid))
+                .andExpect(status().isOk());
+    }
+
     @Test
     void given_existingGames_when_getAvailableGames_then_200() throws Exception {
         Game game = new Game();
         game.setUuid(UUID.randomUUID().toString());
+        game.setGameId(gameIdGenerator.nextId());
         game.setWhitePlayerNickname("whiteP");
         game.setBlackPlayerNickname("blackP");
         game.setGameStatus(GameStatus.CREATED);
@@ -125,6 +304,31 @@ public class IntegrationTests {
                 .andExpect(jsonPath("$.uuid", is(uuid)));
     }
 
+    @Test
+    void given_createdGame_when_getGameById_should_findTheSameGameAsByUuid() throws Exception {
+        GameCreationIntent gameCreationIntent = new GameCreationIntent("player1");
+        ObjectMapper om = new ObjectMapper();
+        String response = mvc.perform(post("/games")
+                        .content(om.writeValueAsString(gameCreationIntent))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", notNullValue()))
+                .andReturn().getResponse().getContentAsString();
+        String id = om.readTree(response).get("id").asText();
+        String uuid = om.readTree(response).get("uuid").asText();
+        assertTrue(id.length() <= 11);
+        mvc.perform(get("/games/{id}", id))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.uuid", is(uuid)));
+        mvc.perform(get("/games/{uuid}", uuid))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id", is(id)));
+        mvc.perform(delete("/games/{id}", id))
+                .andExpect(status().isOk());
+        mvc.perform(get("/games/{uuid}", uuid))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void given_nonExistingGame_when_getGameByUuid_then_404() throws Exception {
         mvc.perform(get("/games/{uuid}", UUID.randomUUID().toString()))
@@ -166,4 +370,178 @@ public class IntegrationTests {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    void when_getLanes_should_returnQueueDepthOfEveryLane() throws Exception {
+        mvc.perform(get("/executor/lanes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", not(empty())))
+                .andExpect(jsonPath("$[0].lane", is(0)))
+                .andExpect(jsonPath("$[0].queueDepth", greaterThanOrEqualTo(0)));
+    }
+
+    @Test
+    void given_createdGame_when_manyPlayersJoinConcurrently_should_letExactlyOneJoin() throws Exception {
+        Game game = new Game();
+        String uuid = UUID.randomUUID().toString();
+        game.setUuid(uuid);
+        game.setBlackPlayerNickname("blackP");
+        game.setGameStatus(GameStatus.CREATED);
+        gameRepository.save(game);
+        int joiners = 16;
+        ExecutorService executorService = Executors.newFixedThreadPool(joiners);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Boolean>> joins = new ArrayList<>();
+        for (int i = 0; i < joiners; i++) {
+            PlayerDto playerDto = new PlayerDto("whiteP" + i);
+            joins.add(executorService.submit(() -> {
+                start.await();
+                try {
+                    gameService.handleJoiningEvent(uuid, playerDto);
+                    return true;
+                } catch (GameException e) {
+                    return false;
+                }
+            }));
+        }
+        start.countDown();
+        int successfulJoins = 0;
+        for (Future<Boolean> join : joins) {
+            successfulJoins += join.get() ? 1 : 0;
+        }
+        executorService.shutdown();
+        assertEquals(1, successfulJoins);
+    }
+
+    @Test
+    void given_manyCreatedGames_when_getAvailableGamesByPage_should_followCursorThroughAllOfThem() throws Exception {
+        List<Game> games = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            Game game = new Game();
+            game.setUuid(UUID.randomUUID().toString());
+            game.setGameId(gameIdGenerator.nextId());
+            game.setBlackPlayerNickname("lobbyP" + i);
+            game.setGameStatus(GameStatus.CREATED);
+            games.add(gameRepository.save(game));
+        }
+        ObjectMapper om = new ObjectMapper();
+        List<String> nicknames = new ArrayList<>();
+        String cursor = "0";
+        while (cursor != null) {
+            MockHttpServletResponse response = mvc.perform(get("/games/available")
+                            .param("cursor", cursor)
+                            .param("limit", "2"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(lessThanOrEqualTo(2))))
+                    .andReturn().getResponse();
+            om.readTree(response.getContentAsString())
+                    .forEach(game -> nicknames.add(game.get("blackPlayerNickname").asText()));
+            cursor = response.getHeader("X-Next-Cursor");
+        }
+        gameRepository.deleteAll(games);
+        assertTrue(nicknames.containsAll(List.of("lobbyP0", "lobbyP1", "lobbyP2")));
+    }
+
+    @Test
+    void given_lobbyLargerThanOnePage_when_getAllAvailableGames_should_returnEveryAvailableGame() {
+        List<Game> games = new ArrayList<>();
+        for (int i = 0; i <= GameService.MAX_LOBBY_PAGE_SIZE; i++) {
+            Game game = new Game();
+            game.setUuid(UUID.randomUUID().toString());
+            game.setGameId(gameIdGenerator.nextId());
+            game.setBlackPlayerNickname("snapshotP" + i);
+            game.setGameStatus(GameStatus.CREATED);
+            games.add(game);
+        }
+        games = gameRepository.saveAll(games);
+        List<String> snapshotUuids = gameService.getAllAvailableGames().stream()
+                .map(LiveGame::getUuid)
+                .collect(Collectors.toList());
+        gameRepository.deleteAll(games);
+        assertTrue(games.stream().map(Game::getUuid).allMatch(snapshotUuids::contains));
+        assertEquals(snapshotUuids.size(), Set.copyOf(snapshotUuids).size());
+    }
+
+    @Test
+    void given_gamesNotYetWrittenBehind_when_getAvailableGamesByPage_should_notExceedLimit() throws Exception {
+        ObjectMapper om = new ObjectMapper();
+        List<String> gameKeys = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            String content = mvc.perform(post("/games")
+                            .content(om.writeValueAsString(new GameCreationIntent("unflushedP" + i)))
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            gameKeys.add(om.readTree(content).get("uuid").asText());
+        }
+        List<String> listedKeys = new ArrayList<>();
+        String cursor = "0";
+        while (cursor != null) {
+            MockHttpServletResponse response = mvc.perform(get("/games/available")
+                            .param("cursor", cursor)
+                            .param("limit", "1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(lessThanOrEqualTo(1))))
+                    .andReturn().getResponse();
+            om.readTree(response.getContentAsString()).forEach(game -> listedKeys.add(game.get("uuid").asText()));
+            String nextCursor = response.getHeader("X-Next-Cursor");
+            assertTrue(nextCursor == null || Long.parseLong(nextCursor) > Long.parseLong(cursor));
+            cursor = nextCursor;
+        }
+        for (String gameKey : gameKeys) {
+            mvc.perform(delete("/games/{gameKey}", gameKey));
+        }
+        assertTrue(listedKeys.containsAll(gameKeys));
+        assertEquals(listedKeys.size(), Set.copyOf(listedKeys).size());
+    }
+
+    @Test
+    void given_registeredPlayer_when_postPlayerAgainAfterDeletion_should_registerAgain() throws Exception {
+        PlayerDto player = new PlayerDto("playerR");
+        ObjectMapper om = new ObjectMapper();
+        mvc.perform(post("/players")
+                        .content(om.writeValueAsString(player))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+        mvc.perform(post("/players")
+                        .content(om.writeValueAsString(player))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mvc.perform(delete("/players/{nickname}", player.getNickname()))
+                .andExpect(status().isOk());
+        mvc.perform(post("/players")
+                        .content(om.writeValueAsString(player))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void given_playerPersistedBeforeStartup_when_registryIsLoaded_should_findItWithoutTheDatabase() throws Exception {
+        playerRepository.save(new Player("playerDbOnly"));
+        mvc.perform(get("/players/{nickname}", "playerDbOnly"))
+                .andExpect(status().isNotFound());
+        nicknameRegistry.load();
+        mvc.perform(get("/players/{nickname}", "playerDbOnly"))
+                .andExpect(status().isOk());
+        mvc.perform(delete("/players/{nickname}", "playerDbOnly"))
+                .andExpect(status().isOk());
+        mvc.perform(get("/players/{nickname}", "playerDbOnly"))
+                .andExpect(status().isNotFound());
+        mvc.perform(post("/players")
+                        .content(new ObjectMapper().writeValueAsString(new PlayerDto("playerDbOnly")))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+    private String saveInProgressGame(int boardSize) {
+        Game game = new Game();
+        String uuid = UUID.randomUUID().toString();
+        game.setUuid(uuid);
+        game.setBlackPlayerNickname("blackP");
+        game.setWhitePlayerNickname("whiteP");
+        game.setGameStatus(GameStatus.IN_PROGRESS);
+        game.setBoardSize(boardSize);
+        gameRepository.save(game);
+        return uuid;
+    }
+
 }
@@ -3,7 +3,7 @@ package it.units.crossway.server;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = "event-log.dir=build/event-log/${random.uuid}")
 class ServerApplicationTests {
 
     @Test
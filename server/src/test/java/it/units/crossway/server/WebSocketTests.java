@@ -1,6 +1,14 @@
 package it.units.crossway.server;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import it.units.crossway.core.GameEvent;
+import it.units.crossway.core.GameEventEnvelope;
+import it.units.crossway.server.config.GameEventMessageConverter;
+import it.units.crossway.server.controller.GameEventController;
+import it.units.crossway.server.model.dto.EventAck;
+import it.units.crossway.server.model.dto.EventError;
+import it.units.crossway.server.model.dto.GameCreationIntent;
+import it.units.crossway.server.model.dto.LobbyDelta;
 import it.units.crossway.server.model.dto.PlayerDto;
 import it.units.crossway.server.model.dto.StonePlacementIntent;
 import it.units.crossway.server.model.entity.Game;
@@ -8,6 +16,7 @@ import it.units.crossway.server.model.entity.GameStatus;
 import it.units.crossway.server.model.entity.Player;
 import it.units.crossway.server.repository.GameRepository;
 import it.units.crossway.server.repository.PlayerRepository;
+import it.units.crossway.server.service.GameEventPublisher;
 import lombok.NonNull;
 import lombok.SneakyThrows;
 import org.junit.jupiter.api.BeforeEach;
@@ -17,6 +26,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.http.MediaType;
+import org.springframework.messaging.converter.CompositeMessageConverter;
 import org.springframework.messaging.converter.MappingJackson2MessageConverter;
 import org.springframework.messaging.simp.stomp.*;
 import org.springframework.test.web.servlet.MockMvc;
@@ -34,10 +44,11 @@ import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "event-log.dir=build/event-log/${random.uuid}")
 @AutoConfigureMockMvc
 public class WebSocketTests {
 
@@ -60,7 +71,7 @@ public class WebSocketTests {
 
     @Test
     void when_handlePlacementEvent_should_respondWith200AndSendMessageToSubscribedClients() throws Exception {
-        BlockingQueue<StonePlacementIntent> blockingQueue = new ArrayBlockingQueue<>(1);
+        BlockingQueue<GameEventEnvelope> blockingQueue = new ArrayBlockingQueue<>(1);
         String uuid = UUID.randomUUID().toString();
         Player whiteP = new Player("whiteP");
         Player blackP = new Player("blackP");
@@ -74,23 +85,23 @@ public class WebSocketTests {
         StonePlacementIntent stonePlacementIntent = new StonePlacementIntent(
                 1,
                 2,
-                "whiteP"
+                "blackP"
         );
         final MvcResult[] mvcResult = new MvcResult[1];
         StompSessionHandler stompSessionHandler = new StompSessionHandlerAdapter() {
             @SneakyThrows
             @Override
             public void afterConnected(StompSession session, @NonNull StompHeaders connectedHeaders) {
-                session.subscribe("/topic/" + uuid, new StompFrameHandler() {
+                session.subscribe("/topic/" + uuid + GameEventPublisher.EVENTS_TOPIC_SUFFIX, new StompFrameHandler() {
                     @Override
                     @NonNull
                     public Type getPayloadType(@NonNull StompHeaders headers) {
-                        return StonePlacementIntent.class;
+                        return GameEventEnvelope.class;
                     }
 
                     @Override
                     public void handleFrame(@NonNull StompHeaders headers, Object payload) {
-                        blockingQueue.add((StonePlacementIntent) payload);
+                        blockingQueue.add((GameEventEnvelope) payload);
                     }
                 });
                 ObjectMapper om = new ObjectMapper();
@@ -108,14 +119,15 @@ public class WebSocketTests {
         };
         stompClient.connect(getWsEndpoint(), stompSessionHandler);
         // block until available or expired timeout
-        StonePlacementIntent event = blockingQueue.poll(5, TimeUnit.SECONDS);
-        assertEquals(stonePlacementIntent, event);
+        GameEventEnvelope envelope = blockingQueue.poll(5, TimeUnit.SECONDS);
+        assertNotNull(envelope);
+        assertEquals(List.of(GameEvent.placement(1, "blackP", 1, 2)), envelope.getEvents());
         assertEquals(200, mvcResult[0].getResponse().getStatus());
     }
 
     @Test
     void when_handleJoiningEvent_should_sendMessageToOpponent() throws InterruptedException {
-        BlockingQueue<StompHeaders> blockingQueue = new ArrayBlockingQueue<>(1);
+        BlockingQueue<GameEventEnvelope> blockingQueue = new ArrayBlockingQueue<>(1);
         String uuid = UUID.randomUUID().toString();
         Player blackP = new Player("blackP");
         Game game = new Game();
@@ -130,16 +142,16 @@ public class WebSocketTests {
             @SneakyThrows
             @Override
             public void afterConnected(StompSession session, @NonNull StompHeaders connectedHeaders) {
-                session.subscribe("/topic/" + uuid, new StompFrameHandler() {
+                session.subscribe("/topic/" + uuid + GameEventPublisher.EVENTS_TOPIC_SUFFIX, new StompFrameHandler() {
                     @Override
                     @NonNull
                     public Type getPayloadType(@NonNull StompHeaders headers) {
-                        return String.class;
+                        return GameEventEnvelope.class;
                     }
 
                     @Override
                     public void handleFrame(@NonNull StompHeaders headers, Object payload) {
-                        blockingQueue.add(headers);
+                        blockingQueue.add((GameEventEnvelope) payload);
                     }
                 });
                 ObjectMapper om = new ObjectMapper();
@@ -154,37 +166,41 @@ public class WebSocketTests {
             }
         };
         stompClient.connect(getWsEndpoint(), stompSessionHandler);
-        StompHeaders responseHeaders = blockingQueue.poll(2, TimeUnit.SECONDS);
-        assertNotNull(responseHeaders);
-        assertTrue(responseHeaders.containsKey("join-event"));
-        assertEquals(whiteP.getNickname(), responseHeaders.getFirst("join-event"));
+        GameEventEnvelope envelope = blockingQueue.poll(2, TimeUnit.SECONDS);
+        assertNotNull(envelope);
+        assertEquals(List.of(GameEvent.of(GameEvent.Kind.JOIN, 1, whiteP.getNickname())), envelope.getEvents());
         assertEquals(200, mvcResult[0].getResponse().getStatus());
     }
 
     @Test
-    void when_handlePieRuleEvent_should_sendMessageToSubscribedClients() throws InterruptedException {
-        BlockingQueue<StompHeaders> blockingQueue = new ArrayBlockingQueue<>(1);
+    void when_handlePieRuleEvent_should_sendMessageToSubscribedClients() throws Exception {
+        BlockingQueue<GameEventEnvelope> blockingQueue = new ArrayBlockingQueue<>(1);
         String uuid = UUID.randomUUID().toString();
         Game game = new Game();
         game.setUuid(uuid);
+        game.setBlackPlayerNickname("pieBlackP");
+        game.setWhitePlayerNickname("xxx");
         game.setGameStatus(GameStatus.IN_PROGRESS);
         gameRepository.save(game);
         final MvcResult[] mvcResult = new MvcResult[1];
         ObjectMapper om = new ObjectMapper();
+        mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                .content(om.writeValueAsString(new StonePlacementIntent(3, 3, "pieBlackP")))
+                .contentType(MediaType.APPLICATION_JSON));
         PlayerDto playerDto = new PlayerDto("xxx");
         StompSessionHandler stompSessionHandler = new StompSessionHandlerAdapter() {
             @Override
             public void afterConnected(StompSession session, @NonNull StompHeaders connectedHeaders) {
-                session.subscribe("/topic/" + uuid, new StompFrameHandler() {
+                session.subscribe("/topic/" + uuid + GameEventPublisher.EVENTS_TOPIC_SUFFIX, new StompFrameHandler() {
                     @Override
                     @NonNull
                     public Type getPayloadType(@NonNull StompHeaders headers) {
-                        return StonePlacementIntent.class;
+                        return GameEventEnvelope.class;
                     }
 
                     @Override
                     public void handleFrame(@NonNull StompHeaders headers, Object payload) {
-                        blockingQueue.add(headers);
+                        blockingQueue.add((GameEventEnvelope) payload);
                     }
                 });
                 try {
@@ -199,13 +215,309 @@ public class WebSocketTests {
         };
         stompClient.connect(getWsEndpoint(), stompSessionHandler);
         // block until available or expired timeout
-        StompHeaders responseHeaders = blockingQueue.poll(10, TimeUnit.SECONDS);
-        assertNotNull(responseHeaders);
-        assertTrue(responseHeaders.containsKey("pie-rule-event"));
-        assertEquals(playerDto.getNickname(), responseHeaders.getFirst("pie-rule-event"));
+        GameEventEnvelope envelope = blockingQueue.poll(10, TimeUnit.SECONDS);
+        assertNotNull(envelope);
+        assertEquals(List.of(GameEvent.of(GameEvent.Kind.PIE_RULE, 2, playerDto.getNickname())), envelope.getEvents());
         assertEquals(200, mvcResult[0].getResponse().getStatus());
     }
 
+    @Test
+    void given_invalidPieRuleClaim_when_handlePieRuleEvent_should_respondWith400AndNotBroadcast() throws InterruptedException {
+        BlockingQueue<GameEventEnvelope> blockingQueue = new ArrayBlockingQueue<>(1);
+        String uuid = UUID.randomUUID().toString();
+        Game game = new Game();
+        game.setUuid(uuid);
+        game.setBlackPlayerNickname("rejectedBlackP");
+        game.setWhitePlayerNickname("rejectedWhiteP");
+        game.setGameStatus(GameStatus.IN_PROGRESS);
+        gameRepository.save(game);
+        final MvcResult[] mvcResult = new MvcResult[1];
+        ObjectMapper om = new ObjectMapper();
+        PlayerDto playerDto = new PlayerDto("rejectedWhiteP");
+        StompSessionHandler stompSessionHandler = new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, @NonNull StompHeaders connectedHeaders) {
+                session.subscribe("/topic/" + uuid + GameEventPublisher.EVENTS_TOPIC_SUFFIX, new StompFrameHandler() {
+                    @Override
+                    @NonNull
+                    public Type getPayloadType(@NonNull StompHeaders headers) {
+                        return GameEventEnvelope.class;
+                    }
+
+                    @Override
+                    public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+                        blockingQueue.add((GameEventEnvelope) payload);
+                    }
+                });
+                try {
+                    // no stone is on the board yet, so there is nothing to swap
+                    mvcResult[0] = mvc.perform(post("/games/{uuid}/events/pie-rule", uuid)
+                                    .content(om.writeValueAsString(playerDto))
+                                    .contentType(MediaType.APPLICATION_JSON))
+                            .andReturn();
+                } catch (Exception e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+        };
+        stompClient.connect(getWsEndpoint(), stompSessionHandler);
+        assertNull(blockingQueue.poll(2, TimeUnit.SECONDS));
+        assertNotNull(mvcResult[0]);
+        assertEquals(400, mvcResult[0].getResponse().getStatus());
+    }
+
+    @Test
+    void when_gameIsCreatedAndDeleted_should_pushLobbyDeltas() throws InterruptedException {
+        BlockingQueue<LobbyDelta> blockingQueue = new ArrayBlockingQueue<>(2);
+        final String[] uuid = new String[1];
+        StompSessionHandler stompSessionHandler = new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, @NonNull StompHeaders connectedHeaders) {
+                session.subscribe("/topic/lobby", new StompFrameHandler() {
+                    @Override
+                    @NonNull
+                    public Type getPayloadType(@NonNull StompHeaders headers) {
+                        return LobbyDelta.class;
+                    }
+
+                    @Override
+                    public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+                        blockingQueue.add((LobbyDelta) payload);
+                    }
+                });
+                ObjectMapper om = new ObjectMapper();
+                try {
+                    String response = mvc.perform(post("/games")
+                                    .content(om.writeValueAsString(new GameCreationIntent("lobbyP")))
+                                    .contentType(MediaType.APPLICATION_JSON))
+                            .andReturn().getResponse().getContentAsString();
+                    uuid[0] = om.readTree(response).get("uuid").asText();
+                    mvc.perform(delete("/games/{uuid}", uuid[0]));
+                } catch (Exception e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+        };
+        stompClient.connect(getWsEndpoint(), stompSessionHandler);
+        LobbyDelta added = blockingQueue.poll(5, TimeUnit.SECONDS);
+        LobbyDelta removed = blockingQueue.poll(5, TimeUnit.SECONDS);
+        assertNotNull(added);
+        assertNotNull(removed);
+        assertEquals(LobbyDelta.Type.ADDED, added.getType());
+        assertEquals("lobbyP", added.getGame().getBlackPlayerNickname());
+        assertEquals(LobbyDelta.Type.REMOVED, removed.getType());
+        assertEquals(uuid[0], removed.getGame().getUuid());
+    }
+
+    @Test
+    void when_sendPlacementOverStomp_should_acknowledgeSenderAndSendMessageToSubscribedClients() throws InterruptedException {
+        BlockingQueue<GameEventEnvelope> placements = new ArrayBlockingQueue<>(1);
+        BlockingQueue<EventAck> acks = new ArrayBlockingQueue<>(1);
+        String uuid = UUID.randomUUID().toString();
+        Game game = new Game();
+        game.setUuid(uuid);
+        game.setWhitePlayerNickname("stompWhiteP");
+        game.setBlackPlayerNickname("stompBlackP");
+        game.setGameStatus(GameStatus.IN_PROGRESS);
+        gameRepository.save(game);
+        StonePlacementIntent stonePlacementIntent = new StonePlacementIntent(1, 2, "stompBlackP");
+        StompSessionHandler stompSessionHandler = new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, @NonNull StompHeaders connectedHeaders) {
+                session.subscribe("/topic/" + uuid + GameEventPublisher.EVENTS_TOPIC_SUFFIX, new StompFrameHandler() {
+                    @Override
+                    @NonNull
+                    public Type getPayloadType(@NonNull StompHeaders headers) {
+                        return GameEventEnvelope.class;
+                    }
+
+                    @Override
+                    public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+                        placements.add((GameEventEnvelope) payload);
+                    }
+                });
+                session.subscribe("/user" + GameEventController.ACKS_QUEUE, new StompFrameHandler() {
+                    @Override
+                    @NonNull
+                    public Type getPayloadType(@NonNull StompHeaders headers) {
+                        return EventAck.class;
+                    }
+
+                    @Override
+                    public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+                        acks.add((EventAck) payload);
+                    }
+                });
+                StompHeaders headers = new StompHeaders();
+                headers.setDestination("/app/games/" + uuid + "/events/placement");
+                headers.set(GameEventController.IDEMPOTENCY_KEY_HEADER, "7");
+                session.send(headers, stonePlacementIntent);
+            }
+        };
+        stompClient.connect(getWsEndpoint(), stompSessionHandler);
+        GameEventEnvelope envelope = placements.poll(5, TimeUnit.SECONDS);
+        assertNotNull(envelope);
+        assertEquals(List.of(GameEvent.placement(1, "stompBlackP", 1, 2)), envelope.getEvents());
+        EventAck ack = acks.poll(5, TimeUnit.SECONDS);
+        assertNotNull(ack);
+        assertEquals(uuid, ack.getGameKey());
+        assertEquals("placement", ack.getEvent());
+        assertEquals(7L, ack.getIdempotencyKey());
+    }
+
+    @Test
+    void given_nonExistingGame_when_sendPlacementOverStomp_should_sendErrorToSender() throws InterruptedException {
+        BlockingQueue<EventError> errors = new ArrayBlockingQueue<>(1);
+        StompSessionHandler stompSessionHandler = new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, @NonNull StompHeaders connectedHeaders) {
+                session.subscribe("/user" + GameEventController.ERRORS_QUEUE, new StompFrameHandler() {
+                    @Override
+                    @NonNull
+                    public Type getPayloadType(@NonNull StompHeaders headers) {
+                        return EventError.class;
+                    }
+
+                    @Override
+                    public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+                        errors.add((EventError) payload);
+                    }
+                });
+                session.send("/app/games/" + UUID.randomUUID() + "/events/placement",
+                        new StonePlacementIntent(1, 2, "stompBlackP"));
+            }
+        };
+        stompClient.connect(getWsEndpoint(), stompSessionHandler);
+        EventError error = errors.poll(5, TimeUnit.SECONDS);
+        assertNotNull(error);
+        assertEquals("The game does not exist", error.getMessage());
+    }
+
+    @Test
+    void given_legacyUuidSubscriber_when_handlePlacementEvent_should_sendStonePlacementIntent() throws InterruptedException {
+        BlockingQueue<StonePlacementIntent> blockingQueue = new ArrayBlockingQueue<>(1);
+        String uuid = UUID.randomUUID().toString();
+        Game game = new Game();
+        game.setUuid(uuid);
+        game.setWhitePlayerNickname("legacyWhiteP");
+        game.setBlackPlayerNickname("legacyBlackP");
+        game.setGameStatus(GameStatus.IN_PROGRESS);
+        gameRepository.save(game);
+        StonePlacementIntent stonePlacementIntent = new StonePlacementIntent(2, 3, "legacyBlackP");
+        StompSessionHandler stompSessionHandler = new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, @NonNull StompHeaders connectedHeaders) {
+                session.subscribe("/topic/" + uuid, new StompFrameHandler() {
+                    @Override
+                    @NonNull
+                    public Type getPayloadType(@NonNull StompHeaders headers) {
+                        return StonePlacementIntent.class;
+                    }
+
+                    @Override
+                    public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+                        blockingQueue.add((StonePlacementIntent) payload);
+                    }
+                });
+                ObjectMapper om = new ObjectMapper();
+                try {
+                    mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                            .content(om.writeValueAsString(stonePlacementIntent))
+                            .contentType(MediaType.APPLICATION_JSON));
+                } catch (Exception e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+        };
+        stompClient.connect(getWsEndpoint(), stompSessionHandler);
+        assertEquals(stonePlacementIntent, blockingQueue.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void given_binarySubscriber_when_handlePlacementEvent_should_sendSequencedBinaryEnvelope() throws InterruptedException {
+        stompClient.setMessageConverter(new CompositeMessageConverter(
+                List.of(new GameEventMessageConverter(), new MappingJackson2MessageConverter())));
+        BlockingQueue<Object> blockingQueue = new ArrayBlockingQueue<>(1);
+        String uuid = UUID.randomUUID().toString();
+        Game game = new Game();
+        game.setUuid(uuid);
+        game.setWhitePlayerNickname("binaryWhiteP");
+        game.setBlackPlayerNickname("binaryBlackP");
+        game.setGameStatus(GameStatus.IN_PROGRESS);
+        gameRepository.save(game);
+        StonePlacementIntent stonePlacementIntent = new StonePlacementIntent(3, 4, "binaryBlackP");
+        StompSessionHandler stompSessionHandler = new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, @NonNull StompHeaders connectedHeaders) {
+                session.subscribe("/topic/" + uuid + GameEventPublisher.BINARY_TOPIC_SUFFIX, new StompFrameHandler() {
+                    @Override
+                    @NonNull
+                    public Type getPayloadType(@NonNull StompHeaders headers) {
+                        return GameEventEnvelope.class;
+                    }
+
+                    @Override
+                    public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+                        blockingQueue.add(payload);
+                    }
+                });
+                ObjectMapper om = new ObjectMapper();
+                try {
+                    mvc.perform(post("/games/{uuid}/events/placement", uuid)
+                            .content(om.writeValueAsString(stonePlacementIntent))
+                            .contentType(MediaType.APPLICATION_JSON));
+                } catch (Exception e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+        };
+        stompClient.connect(getWsEndpoint(), stompSessionHandler);
+        assertEquals(GameEventEnvelope.of(GameEvent.placement(1, "binaryBlackP", 3, 4)),
+                blockingQueue.poll(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void when_handleJoiningEvent_should_sendJoinEnvelopeToEventsTopic() throws InterruptedException {
+        BlockingQueue<GameEventEnvelope> blockingQueue = new ArrayBlockingQueue<>(1);
+        String uuid = UUID.randomUUID().toString();
+        Game game = new Game();
+        game.setUuid(uuid);
+        game.setBlackPlayerNickname("envelopeBlackP");
+        game.setGameStatus(GameStatus.CREATED);
+        gameRepository.save(game);
+        PlayerDto whiteP = new PlayerDto("envelopeWhiteP");
+        StompSessionHandler stompSessionHandler = new StompSessionHandlerAdapter() {
+            @Override
+            public void afterConnected(StompSession session, @NonNull StompHeaders connectedHeaders) {
+                session.subscribe("/topic/" + uuid + GameEventPublisher.EVENTS_TOPIC_SUFFIX, new StompFrameHandler() {
+                    @Override
+                    @NonNull
+                    public Type getPayloadType(@NonNull StompHeaders headers) {
+                        return GameEventEnvelope.class;
+                    }
+
+                    @Override
+                    public void handleFrame(@NonNull StompHeaders headers, Object payload) {
+                        blockingQueue.add((GameEventEnvelope) payload);
+                    }
+                });
+                ObjectMapper om = new ObjectMapper();
+                try {
+                    mvc.perform(post("/games/{uuid}/events/joining", uuid)
+                            .content(om.writeValueAsString(whiteP))
+                            .contentType(MediaType.APPLICATION_JSON));
+                } catch (Exception e) {
+                    System.err.println(e.getMessage());
+                }
+            }
+        };
+        stompClient.connect(getWsEndpoint(), stompSessionHandler);
+        GameEventEnvelope envelope = blockingQueue.poll(5, TimeUnit.SECONDS);
+        assertNotNull(envelope);
+        assertEquals(GameEventEnvelope.VERSION, envelope.getVersion());
+        assertEquals(List.of(GameEvent.of(GameEvent.Kind.JOIN, 1, "envelopeWhiteP")), envelope.getEvents());
+    }
+
     private String getWsEndpoint() {
         return String.format("ws://localhost:%d/endpoint", port);
     }